@@ -6,15 +6,19 @@ import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import gc.grivyzom.grivyzomCore.config.ConfigManager;
 import gc.grivyzom.grivyzomCore.config.DatabaseConfigManager;
 import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.managers.PlayerDataManager;
 import gc.grivyzom.grivyzomCore.messaging.PluginMessageManager;
 import gc.grivyzom.grivyzomCore.utils.MessageUtils;
 import org.slf4j.Logger;
 
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Plugin(
         id = "grivyzomcore",
@@ -39,9 +43,7 @@ public class Main {
     private DatabaseConfigManager databaseConfigManager;
     private DatabaseManager databaseManager;
     private PluginMessageManager pluginMessageManager;
-
-    // TODO: Activar cuando estén las tablas creadas
-    //private PlayerDataManager playerDataManager;
+    private PlayerDataManager playerDataManager;
 
     private static Main instance;
 
@@ -71,9 +73,18 @@ public class Main {
             pluginMessageManager = new PluginMessageManager(server, logger);
             pluginMessageManager.registerChannels();
 
-            // TODO: Inicializar gestores cuando estén las tablas creadas
-            //playerDataManager = new PlayerDataManager(databaseManager, logger);
-            //server.getEventManager().register(this, playerDataManager);
+            // Inicializar gestores solo si las tablas ya están creadas
+            if (databaseManager.tableExists("grivyzom_players")) {
+                playerDataManager = new PlayerDataManager(databaseManager, configManager, logger);
+                playerDataManager.openJournal();
+                playerDataManager.reconcileOnlineStatus(server.getAllPlayers().stream()
+                        .map(Player::getUniqueId)
+                        .collect(Collectors.toList()));
+                playerDataManager.start();
+                server.getEventManager().register(this, playerDataManager);
+            } else {
+                MessageUtils.sendWarningMessage(logger, "⚠ Tabla grivyzom_players no encontrada, gestor de jugadores desactivado");
+            }
 
             MessageUtils.sendSuccessMessage(logger, "🎉 Plugin inicializado correctamente");
             MessageUtils.sendInfoMessage(logger, "📦 Versión: 0.1-SNAPSHOT");
@@ -91,6 +102,18 @@ public class Main {
         MessageUtils.sendInfoMessage(logger, "🔄 Cerrando GrivyzomCore...");
 
         try {
+            // Un único plazo para guardar los cambios pendientes y cerrar la base de datos
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(
+                    configManager != null ? configManager.getShutdownSaveTimeout() : 10);
+            if (databaseManager != null) {
+                databaseManager.beginShutdown(deadline);
+            }
+
+            // Guardar cambios pendientes antes de cerrar la base de datos
+            if (playerDataManager != null) {
+                playerDataManager.shutdown(deadline);
+            }
+
             if (databaseManager != null) {
                 databaseManager.close();
             }
@@ -127,12 +150,9 @@ public class Main {
         return pluginMessageManager;
     }
 
-    // TODO: Descomentar cuando estén implementadas las tablas
-    /*
     public PlayerDataManager getPlayerDataManager() {
         return playerDataManager;
     }
-    */
 
     public ProxyServer getServer() {
         return server;
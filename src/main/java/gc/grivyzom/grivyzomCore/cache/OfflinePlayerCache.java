@@ -0,0 +1,238 @@
+package gc.grivyzom.grivyzomCore.cache;
+
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Caché de segundo nivel para jugadores offline.
+ *
+ * Mantiene como máximo cache_size jugadores, expulsando el menos usado
+ * recientemente (LRU), y descarta las entradas con más de cache_expire_time.
+ * Incluye un índice por nombre en minúsculas para búsquedas por usuario.
+ * Mientras la base de datos no está disponible las entradas no expiran, para
+ * seguir sirviendo lecturas desde memoria.
+ */
+public class OfflinePlayerCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long expireMillis;
+    private final BooleanSupplier holdExpired;
+
+    // Orden de acceso: la primera entrada es la menos usada recientemente
+    private final LinkedHashMap<UUID, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, UUID> usernameIndex = new HashMap<>();
+
+    // Estadísticas
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public OfflinePlayerCache(boolean enabled, int maxSize, long expireSeconds, BooleanSupplier holdExpired) {
+        this.enabled = enabled && maxSize > 0;
+        this.maxSize = maxSize;
+        this.expireMillis = expireSeconds * 1000L;
+        this.holdExpired = holdExpired;
+    }
+
+    /**
+     * Obtiene un jugador por UUID si está en caché y no ha expirado
+     */
+    public synchronized GrivyzomPlayer get(UUID uuid) {
+        if (!enabled) {
+            return null;
+        }
+
+        CacheEntry entry = entries.get(uuid);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired() && !holdExpired.getAsBoolean()) {
+            removeEntry(uuid);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.player;
+    }
+
+    /**
+     * Obtiene un jugador por nombre (sin distinguir mayúsculas)
+     */
+    public synchronized GrivyzomPlayer getByUsername(String username) {
+        if (!enabled) {
+            return null;
+        }
+
+        UUID uuid = usernameIndex.get(username.toLowerCase(Locale.ROOT));
+        if (uuid == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        return get(uuid);
+    }
+
+    /**
+     * Guarda un jugador offline, expulsando el menos usado si se supera cache_size
+     */
+    public synchronized void put(GrivyzomPlayer player) {
+        if (!enabled) {
+            return;
+        }
+
+        removeEntry(player.getUuid());
+        entries.put(player.getUuid(), new CacheEntry(player, System.currentTimeMillis() + expireMillis));
+        usernameIndex.put(player.getUsername().toLowerCase(Locale.ROOT), player.getUuid());
+
+        Iterator<Map.Entry<UUID, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            CacheEntry eldest = iterator.next().getValue();
+            iterator.remove();
+            usernameIndex.remove(eldest.username, eldest.player.getUuid());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Saca un jugador de la caché (p.ej. para pasarlo a la caché de jugadores online).
+     * Devuelve null si no estaba o había expirado.
+     */
+    public synchronized GrivyzomPlayer remove(UUID uuid) {
+        if (!enabled) {
+            return null;
+        }
+
+        CacheEntry entry = removeEntry(uuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            expirations.incrementAndGet();
+            return null;
+        }
+        return entry.player;
+    }
+
+    /**
+     * Invalida la entrada de un jugador
+     */
+    public synchronized void invalidate(UUID uuid) {
+        if (enabled) {
+            removeEntry(uuid);
+        }
+    }
+
+    /**
+     * Elimina las entradas expiradas
+     */
+    public synchronized void purgeExpired() {
+        if (holdExpired.getAsBoolean()) {
+            return;
+        }
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry entry = iterator.next();
+            if (entry.isExpired()) {
+                iterator.remove();
+                usernameIndex.remove(entry.username, entry.player.getUuid());
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usernameIndex.clear();
+    }
+
+    private CacheEntry removeEntry(UUID uuid) {
+        CacheEntry entry = entries.remove(uuid);
+        if (entry != null) {
+            usernameIndex.remove(entry.username, uuid);
+        }
+        return entry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Obtiene estadísticas de la caché
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), maxSize, hits.get(), misses.get(), evictions.get(), expirations.get());
+    }
+
+    /**
+     * Entrada de la caché con su instante de expiración
+     */
+    private static final class CacheEntry {
+        private final GrivyzomPlayer player;
+        private final String username;
+        private final long expiresAt;
+
+        private CacheEntry(GrivyzomPlayer player, long expiresAt) {
+            this.player = player;
+            this.username = player.getUsername().toLowerCase(Locale.ROOT);
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    /**
+     * Clase para estadísticas de la caché
+     */
+    public static class CacheStats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        public CacheStats(int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "CacheStats{size=%d/%d, hits=%d, misses=%d, hitRate=%.2f%%, evictions=%d, expirations=%d}",
+                    size, maxSize, hits, misses, getHitRate() * 100, evictions, expirations
+            );
+        }
+    }
+}
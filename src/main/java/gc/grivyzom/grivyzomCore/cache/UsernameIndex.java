@@ -0,0 +1,154 @@
+package gc.grivyzom.grivyzomCore.cache;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice de nombres de usuario (en minúsculas) a UUID para los jugadores online,
+ * junto con una caché negativa de nombres que no existen en la base de datos.
+ */
+public class UsernameIndex {
+
+    // Límite de nombres inexistentes recordados
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+
+    private final Map<String, UUID> onlineNames = new ConcurrentHashMap<>();
+    private final Map<String, Long> missingNames = new ConcurrentHashMap<>();
+    private final long negativeExpireMillis;
+
+    // Estadísticas
+    private final AtomicLong indexHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+
+    public UsernameIndex(long negativeExpireSeconds) {
+        this.negativeExpireMillis = negativeExpireSeconds * 1000L;
+    }
+
+    /**
+     * Registra el nombre de un jugador online, retirando su nombre anterior si cambió
+     */
+    public void add(String previousUsername, String username, UUID uuid) {
+        if (previousUsername != null && !previousUsername.equalsIgnoreCase(username)) {
+            onlineNames.remove(key(previousUsername), uuid);
+        }
+        onlineNames.put(key(username), uuid);
+        missingNames.remove(key(username));
+    }
+
+    /**
+     * Retira el nombre de un jugador que se desconectó
+     */
+    public void remove(String username, UUID uuid) {
+        onlineNames.remove(key(username), uuid);
+    }
+
+    /**
+     * Obtiene el UUID de un jugador online por nombre, o null
+     */
+    public UUID find(String username) {
+        UUID uuid = onlineNames.get(key(username));
+        if (uuid != null) {
+            indexHits.incrementAndGet();
+        }
+        return uuid;
+    }
+
+    /**
+     * Verifica si se sabe (recientemente) que el nombre no existe
+     */
+    public boolean isKnownMissing(String username) {
+        if (negativeExpireMillis <= 0) {
+            return false;
+        }
+
+        String key = key(username);
+        Long expiresAt = missingNames.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() > expiresAt) {
+            missingNames.remove(key, expiresAt);
+            return false;
+        }
+
+        negativeHits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Recuerda que un nombre no existe en la base de datos
+     */
+    public void markMissing(String username) {
+        if (negativeExpireMillis <= 0) {
+            return;
+        }
+
+        if (missingNames.size() >= MAX_NEGATIVE_ENTRIES) {
+            purgeExpired();
+            if (missingNames.size() >= MAX_NEGATIVE_ENTRIES) {
+                missingNames.clear();
+            }
+        }
+        missingNames.put(key(username), System.currentTimeMillis() + negativeExpireMillis);
+    }
+
+    /**
+     * Olvida que un nombre no existía (p.ej. al registrarse un jugador con ese nombre)
+     */
+    public void clearMissing(String username) {
+        missingNames.remove(key(username));
+    }
+
+    /**
+     * Elimina las entradas negativas expiradas
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        missingNames.values().removeIf(expiresAt -> now > expiresAt);
+    }
+
+    private static String key(String username) {
+        // Locale.ROOT: con la configuración regional turca "I" no pasaría a "i"
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Obtiene estadísticas del índice
+     */
+    public IndexStats getStats() {
+        return new IndexStats(onlineNames.size(), missingNames.size(), indexHits.get(), negativeHits.get());
+    }
+
+    /**
+     * Clase para estadísticas del índice de nombres
+     */
+    public static class IndexStats {
+        private final int onlineNames;
+        private final int missingNames;
+        private final long indexHits;
+        private final long negativeHits;
+
+        public IndexStats(int onlineNames, int missingNames, long indexHits, long negativeHits) {
+            this.onlineNames = onlineNames;
+            this.missingNames = missingNames;
+            this.indexHits = indexHits;
+            this.negativeHits = negativeHits;
+        }
+
+        public int getOnlineNames() { return onlineNames; }
+        public int getMissingNames() { return missingNames; }
+        public long getIndexHits() { return indexHits; }
+        public long getNegativeHits() { return negativeHits; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "IndexStats{online=%d, missing=%d, indexHits=%d, negativeHits=%d}",
+                    onlineNames, missingNames, indexHits, negativeHits
+            );
+        }
+    }
+}
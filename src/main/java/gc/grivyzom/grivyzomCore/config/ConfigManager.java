@@ -29,18 +29,36 @@ public class ConfigManager {
             # Configuraciones generales del plugin
             debug_mode = false
             auto_save_interval = 300  # segundos
+            save_batch_size = 500  # jugadores por lote en cada guardado
+            server_flush_interval = 5  # segundos entre guardados del último servidor de los jugadores
+            shutdown_save_timeout = 10  # segundos máximos para guardar los jugadores y cerrar la base de datos
+            reset_online_on_startup = false  # marcar a TODOS como desconectados al iniciar (solo si este proxy es el único que usa la base de datos)
             language = "es"
             
             [messaging]
             # Sistema de mensajería entre plugins
             enable_plugin_messaging = true
             message_timeout = 5000  # milisegundos
+            status_refresh_interval = 30  # segundos entre consultas de estado a los servidores (0 = desactivado)
+            outbound_queue_size = 100  # mensajes guardados por servidor sin jugadores hasta que entre alguno (0 = desactivado)
+            outbound_message_ttl = 300  # segundos que se guarda un mensaje sin entregar
             
             [cache]
             # Configuración del sistema de caché
             enable_cache = true
             cache_size = 1000
             cache_expire_time = 3600  # segundos
+            negative_cache_time = 60  # segundos que se recuerda un nombre inexistente (0 = desactivado)
+            
+            [leaderboard]
+            # Rankings en memoria de monedas, gemas y tiempo de juego
+            enable_leaderboards = true
+            reconcile_interval = 600  # segundos entre comparaciones con la base de datos (0 = desactivado)
+            
+            [journal]
+            # Diario local de monedas, gemas y tiempo de juego para no perder cambios si el proxy se cae
+            enable_journal = true
+            fsync = false  # forzar cada escritura a disco (más lento; sin él se protege ante caídas del proceso, no del sistema)
             
             [security]
             # Configuraciones de seguridad
@@ -184,6 +202,22 @@ public class ConfigManager {
         return getInt("plugin.auto_save_interval");
     }
 
+    public int getSaveBatchSize() {
+        return getInt("plugin.save_batch_size", 500);
+    }
+
+    public int getServerFlushInterval() {
+        return getInt("plugin.server_flush_interval", 5);
+    }
+
+    public int getShutdownSaveTimeout() {
+        return getInt("plugin.shutdown_save_timeout", 10);
+    }
+
+    public boolean isResetOnlineOnStartup() {
+        return getBoolean("plugin.reset_online_on_startup", false);
+    }
+
     public String getLanguage() {
         return getString("plugin.language", "es");
     }
@@ -196,16 +230,52 @@ public class ConfigManager {
         return getInt("messaging.message_timeout");
     }
 
+    public int getStatusRefreshInterval() {
+        return getInt("messaging.status_refresh_interval", 30);
+    }
+
+    public int getOutboundQueueSize() {
+        return getInt("messaging.outbound_queue_size", 100);
+    }
+
+    public int getOutboundMessageTtl() {
+        return getInt("messaging.outbound_message_ttl", 300);
+    }
+
     public boolean isCacheEnabled() {
-        return getBoolean("cache.enable_cache");
+        return getBoolean("cache.enable_cache", true);
     }
 
     public int getCacheSize() {
-        return getInt("cache.cache_size");
+        return getInt("cache.cache_size", 1000);
     }
 
     public int getCacheExpireTime() {
-        return getInt("cache.cache_expire_time");
+        return getInt("cache.cache_expire_time", 3600);
+    }
+
+    public int getNegativeCacheTime() {
+        return getInt("cache.negative_cache_time", 60);
+    }
+
+    public boolean isLeaderboardEnabled() {
+        return getBoolean("leaderboard.enable_leaderboards", true);
+    }
+
+    public int getLeaderboardReconcileInterval() {
+        return getInt("leaderboard.reconcile_interval", 600);
+    }
+
+    public boolean isJournalEnabled() {
+        return getBoolean("journal.enable_journal", true);
+    }
+
+    public boolean isJournalFsync() {
+        return getBoolean("journal.fsync", false);
+    }
+
+    public Path getDataDirectory() {
+        return dataDirectory;
     }
 
     public boolean isEncryptionEnabled() {
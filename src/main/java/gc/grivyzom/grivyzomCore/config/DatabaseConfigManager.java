@@ -44,6 +44,8 @@ public class DatabaseConfigManager {
               connection_timeout: 30000
               idle_timeout: 600000
               max_lifetime: 1800000
+              leak_detection_threshold: 60000  # 0 para desactivar
+              validation_idle_threshold: 500  # solo se valida una conexión inactiva más de estos ms
               
             # Configuraciones adicionales de conexión (CORREGIDAS)
             options:
@@ -60,6 +62,27 @@ public class DatabaseConfigManager {
               prep_stmt_cache_size: 250
               prep_stmt_cache_sql_limit: 2048
               use_server_prep_stmts: true
+              rewrite_batched_statements: true
+              allow_multi_queries: false  # true: login sin carga anticipada en una ida y vuelta (si no, dos); permite varias sentencias por envío en todo el pool
+              use_cursor_fetch: true  # los recorridos grandes leen las filas por bloques con un cursor del servidor
+              
+            # Ejecución de las consultas asíncronas
+            async:
+              use_virtual_threads: true  # si la JVM no los soporta se usa un pool de hilos
+              max_concurrency: 0  # tareas de base de datos simultáneas (0 = max_pool_size)
+              queue_size: 1000  # tareas en espera; con la cola llena se rechazan las nuevas
+              
+            # Escrituras en espera mientras la base de datos no está disponible
+            write_queue:
+              enabled: true
+              memory_capacity: 10000  # escrituras también en memoria; todas se guardan en disco al encolarse
+              disk_capacity: 100000  # escrituras en pending-writes.dat (0 = solo memoria)
+              
+            # Corte de las operaciones mientras la base de datos no responde
+            circuit_breaker:
+              failure_threshold: 3  # errores de conexión seguidos para dejar de intentarlo
+              base_backoff: 1000  # milisegundos hasta el primer intento de reconexión
+              max_backoff: 60000  # espera máxima entre intentos (se dobla en cada fallo)
             """;
 
     public DatabaseConfigManager(Path dataDirectory, Logger logger) {
@@ -149,6 +172,10 @@ public class DatabaseConfigManager {
             hasErrors = true;
         }
 
+        if (getPoolInt("min_idle") > getPoolInt("max_pool_size")) {
+            MessageUtils.sendWarningMessage(logger, "⚠ min_idle es mayor que max_pool_size, se usará max_pool_size");
+        }
+
         if (hasErrors) {
             throw new RuntimeException("La configuración de base de datos tiene errores críticos");
         }
@@ -193,6 +220,21 @@ public class DatabaseConfigManager {
         return (Map<String, Object>) databaseConfig.getOrDefault("performance", new LinkedHashMap<>());
     }
 
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getAsyncConfig() {
+        return (Map<String, Object>) databaseConfig.getOrDefault("async", new LinkedHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getWriteQueueConfig() {
+        return (Map<String, Object>) databaseConfig.getOrDefault("write_queue", new LinkedHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getCircuitBreakerConfig() {
+        return (Map<String, Object>) databaseConfig.getOrDefault("circuit_breaker", new LinkedHashMap<>());
+    }
+
     public String getConnectionString(String key) {
         return (String) getConnectionConfig().getOrDefault(key, "");
     }
@@ -249,6 +291,46 @@ public class DatabaseConfigManager {
         return 0;
     }
 
+    public boolean getAsyncBoolean(String key, boolean defaultValue) {
+        Object value = getAsyncConfig().get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return defaultValue;
+    }
+
+    public int getAsyncInt(String key, int defaultValue) {
+        Object value = getAsyncConfig().get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
+    public boolean getWriteQueueBoolean(String key, boolean defaultValue) {
+        Object value = getWriteQueueConfig().get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return defaultValue;
+    }
+
+    public int getWriteQueueInt(String key, int defaultValue) {
+        Object value = getWriteQueueConfig().get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
+    public long getCircuitBreakerLong(String key, long defaultValue) {
+        Object value = getCircuitBreakerConfig().get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return defaultValue;
+    }
+
     /**
      * Construye la URL de conexión JDBC con todas las opciones (CORREGIDA)
      */
@@ -285,6 +367,9 @@ public class DatabaseConfigManager {
         url.append("&prepStmtCacheSize=").append(getPerformanceInt("prep_stmt_cache_size"));
         url.append("&prepStmtCacheSqlLimit=").append(getPerformanceInt("prep_stmt_cache_sql_limit"));
         url.append("&useServerPrepStmts=").append(getPerformanceBoolean("use_server_prep_stmts"));
+        url.append("&rewriteBatchedStatements=").append(getPerformanceBoolean("rewrite_batched_statements"));
+        url.append("&allowMultiQueries=").append(getPerformanceBoolean("allow_multi_queries"));
+        url.append("&useCursorFetch=").append(getPerformanceBoolean("use_cursor_fetch"));
 
         return url.toString();
     }
@@ -304,6 +389,20 @@ public class DatabaseConfigManager {
                 getPoolLong("connection_timeout"),
                 getPoolLong("idle_timeout"),
                 getPoolLong("max_lifetime"),
+                getPoolLong("leak_detection_threshold"),
+                getPoolLong("validation_idle_threshold"),
+                getAsyncBoolean("use_virtual_threads", true),
+                getAsyncInt("max_concurrency", 0),
+                getAsyncInt("queue_size", 1000),
+                getPerformanceBoolean("allow_multi_queries"),
+                getPerformanceBoolean("use_cursor_fetch"),
+                getWriteQueueBoolean("enabled", true),
+                getWriteQueueInt("memory_capacity", 10000),
+                getWriteQueueInt("disk_capacity", 100000),
+                dataDirectory.resolve("pending-writes.dat"),
+                (int) getCircuitBreakerLong("failure_threshold", 3),
+                getCircuitBreakerLong("base_backoff", 1000),
+                getCircuitBreakerLong("max_backoff", 60000),
                 buildJdbcUrl()
         );
     }
@@ -317,7 +416,7 @@ public class DatabaseConfigManager {
         MessageUtils.sendInfoMessage(logger, "  🏠 Host: " + getConnectionString("host") + ":" + getConnectionInt("port"));
         MessageUtils.sendInfoMessage(logger, "  🗄️ Base de datos: " + getConnectionString("database"));
         MessageUtils.sendInfoMessage(logger, "  👤 Usuario: " + getConnectionString("username"));
-        MessageUtils.sendInfoMessage(logger, "  🔗 Pool máximo: " + getPoolInt("max_pool_size") + " conexiones");
+        MessageUtils.sendInfoMessage(logger, "  🔗 Pool: " + getPoolInt("min_idle") + "-" + getPoolInt("max_pool_size") + " conexiones");
         MessageUtils.sendInfoMessage(logger, "  ⚙️ SSL: " + (getOptionsBoolean("use_ssl") ? "Habilitado" : "Deshabilitado"));
         MessageUtils.sendInfoMessage(logger, "  🔤 Codificación: " + getOptionsString("character_encoding"));
         MessageUtils.sendSeparator(logger);
@@ -337,11 +436,31 @@ public class DatabaseConfigManager {
         private final long connectionTimeout;
         private final long idleTimeout;
         private final long maxLifetime;
+        private final long leakDetectionThreshold;
+        private final long validationIdleThreshold;
+        private final boolean useVirtualThreads;
+        private final int asyncMaxConcurrency;
+        private final int asyncQueueSize;
+        private final boolean allowMultiQueries;
+        private final boolean useCursorFetch;
+        private final boolean writeQueueEnabled;
+        private final int writeQueueMemoryCapacity;
+        private final int writeQueueDiskCapacity;
+        private final Path writeQueueFile;
+        private final int breakerFailureThreshold;
+        private final long breakerBaseBackoff;
+        private final long breakerMaxBackoff;
         private final String jdbcUrl;
 
         public DatabaseConfig(String host, int port, String database, String username,
                               String password, int maxPoolSize, int minIdle,
-                              long connectionTimeout, long idleTimeout, long maxLifetime, String jdbcUrl) {
+                              long connectionTimeout, long idleTimeout, long maxLifetime,
+                              long leakDetectionThreshold, long validationIdleThreshold,
+                              boolean useVirtualThreads, int asyncMaxConcurrency, int asyncQueueSize,
+                              boolean allowMultiQueries, boolean useCursorFetch, boolean writeQueueEnabled,
+                              int writeQueueMemoryCapacity, int writeQueueDiskCapacity, Path writeQueueFile,
+                              int breakerFailureThreshold, long breakerBaseBackoff, long breakerMaxBackoff,
+                              String jdbcUrl) {
             this.host = host;
             this.port = port;
             this.database = database;
@@ -352,6 +471,20 @@ public class DatabaseConfigManager {
             this.connectionTimeout = connectionTimeout;
             this.idleTimeout = idleTimeout;
             this.maxLifetime = maxLifetime;
+            this.leakDetectionThreshold = leakDetectionThreshold;
+            this.validationIdleThreshold = validationIdleThreshold;
+            this.useVirtualThreads = useVirtualThreads;
+            this.asyncMaxConcurrency = asyncMaxConcurrency;
+            this.asyncQueueSize = asyncQueueSize;
+            this.allowMultiQueries = allowMultiQueries;
+            this.useCursorFetch = useCursorFetch;
+            this.writeQueueEnabled = writeQueueEnabled;
+            this.writeQueueMemoryCapacity = writeQueueMemoryCapacity;
+            this.writeQueueDiskCapacity = writeQueueDiskCapacity;
+            this.writeQueueFile = writeQueueFile;
+            this.breakerFailureThreshold = breakerFailureThreshold;
+            this.breakerBaseBackoff = breakerBaseBackoff;
+            this.breakerMaxBackoff = breakerMaxBackoff;
             this.jdbcUrl = jdbcUrl;
         }
 
@@ -366,6 +499,26 @@ public class DatabaseConfigManager {
         public long getConnectionTimeout() { return connectionTimeout; }
         public long getIdleTimeout() { return idleTimeout; }
         public long getMaxLifetime() { return maxLifetime; }
+        public long getLeakDetectionThreshold() { return leakDetectionThreshold; }
+        public long getValidationIdleThreshold() { return validationIdleThreshold; }
+        public boolean isUseVirtualThreads() { return useVirtualThreads; }
+        public int getAsyncQueueSize() { return asyncQueueSize; }
+        public boolean isAllowMultiQueries() { return allowMultiQueries; }
+        public boolean isUseCursorFetch() { return useCursorFetch; }
+        public boolean isWriteQueueEnabled() { return writeQueueEnabled; }
+        public int getWriteQueueMemoryCapacity() { return writeQueueMemoryCapacity; }
+        public int getWriteQueueDiskCapacity() { return writeQueueDiskCapacity; }
+        public Path getWriteQueueFile() { return writeQueueFile; }
+        public int getBreakerFailureThreshold() { return breakerFailureThreshold; }
+        public long getBreakerBaseBackoff() { return breakerBaseBackoff; }
+        public long getBreakerMaxBackoff() { return breakerMaxBackoff; }
+
+        /**
+         * Tareas de base de datos simultáneas; por defecto tantas como conexiones del pool
+         */
+        public int getAsyncMaxConcurrency() {
+            return asyncMaxConcurrency > 0 ? asyncMaxConcurrency : maxPoolSize;
+        }
         public String getJdbcUrl() { return jdbcUrl; }
     }
 }
\ No newline at end of file
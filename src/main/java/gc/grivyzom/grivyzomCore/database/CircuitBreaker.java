@@ -0,0 +1,236 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cortocircuito para las operaciones de base de datos.
+ *
+ * CLOSED: las operaciones pasan y se cuentan los errores de conexión seguidos.
+ * OPEN: al llegar a failure_threshold se rechazan al instante, sin pedir
+ * conexión ni esperar timeouts, hasta el siguiente intento de reconexión.
+ * HALF_OPEN: un único intento de prueba; si funciona se vuelve a CLOSED y si no,
+ * a OPEN con una espera el doble de larga (con variación aleatoria, hasta max_backoff).
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile int consecutiveFailures = 0;
+    private volatile int openAttempts = 0;
+    private volatile long nextAttemptAt = 0;
+    private volatile long stateChangedAt = System.currentTimeMillis();
+
+    // Métricas
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong halfOpened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Verifica si se puede usar la base de datos; si no, cuenta el rechazo
+     */
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Excepción para las operaciones rechazadas; sin traza, porque se crea en cada rechazo
+     */
+    public SQLTransientConnectionException rejection() {
+        return new OpenCircuitException(Math.max(0, nextAttemptAt - System.currentTimeMillis()));
+    }
+
+    /**
+     * Registra una operación completada
+     */
+    public void recordSuccess() {
+        // Lectura sin bloqueo en el caso habitual; el cambio, con el mismo bloqueo que recordFailure
+        if (consecutiveFailures != 0) {
+            synchronized (this) {
+                consecutiveFailures = 0;
+            }
+        }
+    }
+
+    /**
+     * Registra un error de conexión; devuelve true si con él se abre el circuito
+     */
+    public synchronized boolean recordFailure() {
+        if (state.get() != State.CLOSED) {
+            return false;
+        }
+        if (++consecutiveFailures >= failureThreshold) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Abre el circuito sin esperar al umbral (p.ej. si falla la comprobación periódica);
+     * devuelve true si estaba cerrado
+     */
+    public synchronized boolean trip() {
+        if (state.get() == State.CLOSED) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Pasa a HALF_OPEN si ya toca intentar reconectar; solo un hilo lo consigue
+     */
+    public boolean tryHalfOpen() {
+        if (state.get() != State.OPEN || System.currentTimeMillis() < nextAttemptAt) {
+            return false;
+        }
+        if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            halfOpened.incrementAndGet();
+            stateChangedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resultado del intento de reconexión hecho en HALF_OPEN
+     */
+    public synchronized void probeResult(boolean success) {
+        if (state.get() != State.HALF_OPEN) {
+            return;
+        }
+        if (success) {
+            consecutiveFailures = 0;
+            openAttempts = 0;
+            state.set(State.CLOSED);
+            closed.incrementAndGet();
+            stateChangedAt = System.currentTimeMillis();
+        } else {
+            open();
+        }
+    }
+
+    private void open() {
+        long backoff = nextBackoffMillis(openAttempts++);
+        nextAttemptAt = System.currentTimeMillis() + backoff;
+        state.set(State.OPEN);
+        opened.incrementAndGet();
+        stateChangedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Espera exponencial con variación aleatoria: entre la mitad y el total de base * 2^intento
+     */
+    private long nextBackoffMillis(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * Milisegundos hasta el próximo intento de reconexión (0 si ya toca o el circuito está cerrado)
+     */
+    public long getMillisUntilNextAttempt() {
+        return state.get() == State.OPEN ? Math.max(0, nextAttemptAt - System.currentTimeMillis()) : 0;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isClosed() {
+        return state.get() == State.CLOSED;
+    }
+
+    /**
+     * Obtiene estadísticas del cortocircuito
+     */
+    public BreakerStats getStats() {
+        return new BreakerStats(state.get(), consecutiveFailures, openAttempts,
+                System.currentTimeMillis() - stateChangedAt, opened.get(), halfOpened.get(),
+                closed.get(), rejected.get());
+    }
+
+    /**
+     * Error de las operaciones rechazadas con el circuito abierto
+     */
+    private static final class OpenCircuitException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        private OpenCircuitException(long retryInMillis) {
+            super(String.format("Base de datos no disponible, próximo intento de reconexión en %d ms", retryInMillis),
+                    "08001");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Clase para estadísticas del cortocircuito
+     */
+    public static class BreakerStats {
+        private final State state;
+        private final int consecutiveFailures;
+        private final int openAttempts;
+        private final long millisInState;
+        private final long opened;
+        private final long halfOpened;
+        private final long closed;
+        private final long rejected;
+
+        public BreakerStats(State state, int consecutiveFailures, int openAttempts, long millisInState,
+                            long opened, long halfOpened, long closed, long rejected) {
+            this.state = state;
+            this.consecutiveFailures = consecutiveFailures;
+            this.openAttempts = openAttempts;
+            this.millisInState = millisInState;
+            this.opened = opened;
+            this.halfOpened = halfOpened;
+            this.closed = closed;
+            this.rejected = rejected;
+        }
+
+        public State getState() { return state; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public int getOpenAttempts() { return openAttempts; }
+        public long getMillisInState() { return millisInState; }
+        public long getOpened() { return opened; }
+        public long getHalfOpened() { return halfOpened; }
+        public long getClosed() { return closed; }
+        public long getRejected() { return rejected; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "BreakerStats{state=%s, failures=%d, attempts=%d, inStateMs=%d, opened=%d, halfOpened=%d, " +
+                            "closed=%d, rejected=%d}",
+                    state, consecutiveFailures, openAttempts, millisInState, opened, halfOpened, closed, rejected
+            );
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import gc.grivyzom.grivyzomCore.config.DatabaseConfigManager;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de conexiones JDBC acotado por max_pool_size.
+ *
+ * Las conexiones se prestan con {@link #getConnection()} y vuelven al pool al
+ * llamar a close() sobre la conexión devuelta; abort() la descarta por rota.
+ * El mantenimiento periódico ({@link #runMaintenance()}) expulsa conexiones
+ * inactivas, rota las que superan max_lifetime, rellena hasta min_idle y
+ * avisa de posibles fugas.
+ *
+ * Una conexión libre solo se valida (isValid, un ping al servidor) al prestarla
+ * si lleva más de validation_idle_threshold sin usarse; las conexiones usadas
+ * hace poco se entregan directamente.
+ */
+public class ConnectionPool {
+
+    private final DatabaseConfigManager.DatabaseConfig dbConfig;
+    private final Logger logger;
+
+    // Conexiones libres (LIFO para reutilizar las más recientes y dejar envejecer las demás)
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+
+    // Un permiso por préstamo simultáneo; el total de conexiones se limita en reserveSlot()
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    // Métricas
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong validationCount = new AtomicLong();
+    private final AtomicLong skippedValidations = new AtomicLong();
+    private final AtomicLong failedValidations = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(DatabaseConfigManager.DatabaseConfig dbConfig, Logger logger) {
+        this.dbConfig = dbConfig;
+        this.logger = logger;
+        this.permits = new Semaphore(Math.max(1, dbConfig.getMaxPoolSize()), true);
+    }
+
+    /**
+     * Abre las conexiones iniciales hasta min_idle
+     */
+    public void initialize() throws SQLException {
+        fillToMinIdle();
+        MessageUtils.sendInfoMessage(logger, String.format(
+                "🏊 Pool de conexiones iniciado (%d/%d conexiones)",
+                totalConnections.get(), dbConfig.getMaxPoolSize()));
+    }
+
+    /**
+     * Obtiene una conexión del pool, esperando como máximo connection_timeout.
+     * La conexión vuelve al pool al cerrarla.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(getConnectionTimeout());
+        try {
+            if (!permits.tryAcquire(getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException(String.format(
+                        "Tiempo de espera agotado (%d ms) para obtener una conexión del pool",
+                        getConnectionTimeout()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate(deadline);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowerThread = Thread.currentThread().getName();
+            pooled.leakReported = false;
+            borrowedConnections.add(pooled);
+
+            recordWait(System.nanoTime() - start);
+            return pooled.createProxy();
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Toma una conexión libre válida o crea una nueva, esperando como mucho hasta deadline (nanoTime)
+     */
+    private PooledConnection takeIdleOrCreate(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idleConnections.pollFirst();
+            if (pooled == null && reserveSlot()) {
+                return createConnection();
+            }
+
+            if (pooled == null) {
+                // Otra tarea está abriendo una conexión: esperar a que quede libre
+                try {
+                    // Solo el tiempo que queda del connection_timeout, no uno nuevo
+                    pooled = idleConnections.pollFirst(Math.max(0, deadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+                }
+                if (pooled == null) {
+                    timeoutCount.incrementAndGet();
+                    throw new SQLTransientConnectionException("No hay conexiones libres en el pool");
+                }
+            }
+
+            if (pooled.isExpired() || pooled.connection.isClosed() || !validateOnBorrow(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * Valida una conexión libre solo si lleva inactiva más del umbral configurado
+     */
+    private boolean validateOnBorrow(PooledConnection pooled) {
+        long idleFor = System.currentTimeMillis() - pooled.lastUsed;
+        if (idleFor <= dbConfig.getValidationIdleThreshold()) {
+            skippedValidations.incrementAndGet();
+            return true;
+        }
+
+        validationCount.incrementAndGet();
+        try {
+            if (pooled.connection.isValid(5)) {
+                return true;
+            }
+        } catch (SQLException ignored) {
+            // Se trata igual que una conexión inválida
+        }
+        failedValidations.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Reserva un hueco para una conexión nueva sin superar max_pool_size
+     */
+    private boolean reserveSlot() {
+        int max = Math.max(1, dbConfig.getMaxPoolSize());
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= max) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Abre una conexión física nueva sobre un hueco ya reservado
+     */
+    private PooledConnection createConnection() throws SQLException {
+        try {
+            Connection connection = DriverManager.getConnection(
+                    dbConfig.getJdbcUrl(),
+                    dbConfig.getUsername(),
+                    dbConfig.getPassword()
+            );
+            connection.setAutoCommit(true);
+
+            createdCount.incrementAndGet();
+            return new PooledConnection(connection);
+
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool (llamado desde close() del proxy)
+     */
+    private void release(PooledConnection pooled) {
+        if (!borrowedConnections.remove(pooled)) {
+            return;
+        }
+
+        try {
+            boolean reusable = !closed && !pooled.broken && !pooled.isExpired() && !pooled.connection.isClosed();
+            if (reusable && !pooled.connection.getAutoCommit()) {
+                // Transacción abandonada: deshacerla antes de reutilizar la conexión
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Cierra físicamente una conexión del pool
+     */
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        closedCount.incrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+            // La conexión ya no es utilizable
+        }
+    }
+
+    /**
+     * Tarea de mantenimiento: inactividad, tiempo de vida, min_idle y fugas
+     */
+    public void runMaintenance() {
+        if (closed) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int minIdle = Math.min(dbConfig.getMinIdle(), dbConfig.getMaxPoolSize());
+
+        for (PooledConnection pooled : idleConnections) {
+            boolean idleTooLong = dbConfig.getIdleTimeout() > 0
+                    && now - pooled.lastUsed > dbConfig.getIdleTimeout()
+                    && totalConnections.get() > minIdle;
+
+            if ((idleTooLong || pooled.isExpired()) && idleConnections.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        long leakThreshold = dbConfig.getLeakDetectionThreshold();
+        if (leakThreshold > 0) {
+            for (PooledConnection pooled : borrowedConnections) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    MessageUtils.sendWarningMessage(logger, String.format(
+                            "⚠ Posible fuga de conexión: prestada hace %d ms al hilo '%s'",
+                            now - pooled.borrowedAt, pooled.borrowerThread));
+                }
+            }
+        }
+
+        try {
+            fillToMinIdle();
+        } catch (SQLException e) {
+            MessageUtils.sendWarningMessage(logger, "No se pudo rellenar el pool hasta min_idle: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Abre conexiones hasta alcanzar min_idle sin superar max_pool_size
+     */
+    private void fillToMinIdle() throws SQLException {
+        int minIdle = Math.min(dbConfig.getMinIdle(), dbConfig.getMaxPoolSize());
+        while (!closed && idleConnections.size() < minIdle && reserveSlot()) {
+            PooledConnection pooled = createConnection();
+            pooled.lastUsed = System.currentTimeMillis();
+            idleConnections.offerLast(pooled);
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres para que se vuelvan a abrir bajo demanda
+     * (usado tras perder la conexión con el servidor)
+     */
+    public void evictIdleConnections() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Cierra el pool y todas sus conexiones
+     */
+    public void close() {
+        closed = true;
+        evictIdleConnections();
+
+        for (PooledConnection pooled : borrowedConnections) {
+            if (borrowedConnections.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    /**
+     * Tiempo máximo de espera por una conexión (30s si no está configurado)
+     */
+    private long getConnectionTimeout() {
+        return dbConfig.getConnectionTimeout() > 0 ? dbConfig.getConnectionTimeout() : 30000L;
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Obtiene estadísticas del pool
+     */
+    public PoolStats getStats() {
+        long borrows = borrowCount.get();
+        return new PoolStats(
+                totalConnections.get(),
+                idleConnections.size(),
+                borrowedConnections.size(),
+                dbConfig.getMaxPoolSize(),
+                permits.getQueueLength(),
+                borrows,
+                borrows == 0 ? 0.0 : totalWaitNanos.get() / (double) borrows / 1_000_000.0,
+                maxWaitNanos.get() / 1_000_000.0,
+                timeoutCount.get(),
+                createdCount.get(),
+                closedCount.get(),
+                leakCount.get(),
+                validationCount.get(),
+                skippedValidations.get(),
+                failedValidations.get()
+        );
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Conexión física junto a su información de ciclo de vida
+     */
+    private final class PooledConnection {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        private volatile long borrowedAt;
+        private volatile String borrowerThread;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private boolean isExpired() {
+            long maxLifetime = dbConfig.getMaxLifetime();
+            return maxLifetime > 0 && System.currentTimeMillis() - createdAt > maxLifetime;
+        }
+
+        /**
+         * Crea un proxy de la conexión cuyo close() la devuelve al pool.
+         * Cada préstamo tiene su propio proxy, así un close() repetido no afecta
+         * al siguiente usuario de la conexión.
+         */
+        private Connection createProxy() {
+            AtomicInteger released = new AtomicInteger();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close" -> {
+                                if (released.getAndIncrement() == 0) {
+                                    release(this);
+                                }
+                                return null;
+                            }
+                            case "abort" -> {
+                                // Conexión rota: se descarta en lugar de volver al pool
+                                if (released.getAndIncrement() == 0) {
+                                    broken = true;
+                                    release(this);
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> {
+                                return released.get() > 0 || connection.isClosed();
+                            }
+                            case "unwrap" -> {
+                                if (((Class<?>) args[0]).isInstance(proxy)) {
+                                    return proxy;
+                                }
+                            }
+                            case "equals" -> {
+                                return proxy == args[0];
+                            }
+                            case "hashCode" -> {
+                                return System.identityHashCode(proxy);
+                            }
+                            default -> {
+                                if (released.get() > 0) {
+                                    throw new SQLException("La conexión ya fue devuelta al pool");
+                                }
+                            }
+                        }
+
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Clase para estadísticas del pool de conexiones
+     */
+    public static class PoolStats {
+        private final int totalConnections;
+        private final int idleConnections;
+        private final int activeConnections;
+        private final int maxPoolSize;
+        private final int waitingThreads;
+        private final long borrowCount;
+        private final double averageWaitMs;
+        private final double maxWaitMs;
+        private final long timeouts;
+        private final long created;
+        private final long closed;
+        private final long leaks;
+        private final long validations;
+        private final long skippedValidations;
+        private final long failedValidations;
+
+        public PoolStats(int totalConnections, int idleConnections, int activeConnections, int maxPoolSize,
+                         int waitingThreads, long borrowCount, double averageWaitMs, double maxWaitMs,
+                         long timeouts, long created, long closed, long leaks,
+                         long validations, long skippedValidations, long failedValidations) {
+            this.totalConnections = totalConnections;
+            this.idleConnections = idleConnections;
+            this.activeConnections = activeConnections;
+            this.maxPoolSize = maxPoolSize;
+            this.waitingThreads = waitingThreads;
+            this.borrowCount = borrowCount;
+            this.averageWaitMs = averageWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.closed = closed;
+            this.leaks = leaks;
+            this.validations = validations;
+            this.skippedValidations = skippedValidations;
+            this.failedValidations = failedValidations;
+        }
+
+        public int getTotalConnections() { return totalConnections; }
+        public int getIdleConnections() { return idleConnections; }
+        public int getActiveConnections() { return activeConnections; }
+        public int getMaxPoolSize() { return maxPoolSize; }
+        public int getWaitingThreads() { return waitingThreads; }
+        public long getBorrowCount() { return borrowCount; }
+        public double getAverageWaitMs() { return averageWaitMs; }
+        public double getMaxWaitMs() { return maxWaitMs; }
+        public long getTimeouts() { return timeouts; }
+        public long getCreated() { return created; }
+        public long getClosed() { return closed; }
+        public long getLeaks() { return leaks; }
+        public long getValidations() { return validations; }
+        public long getSkippedValidations() { return skippedValidations; }
+        public long getFailedValidations() { return failedValidations; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "PoolStats{total=%d, idle=%d, active=%d, max=%d, waiting=%d, borrows=%d, " +
+                            "avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, created=%d, closed=%d, leaks=%d, " +
+                            "validations=%d, skippedValidations=%d, failedValidations=%d}",
+                    totalConnections, idleConnections, activeConnections, maxPoolSize, waitingThreads,
+                    borrowCount, averageWaitMs, maxWaitMs, timeouts, created, closed, leaks,
+                    validations, skippedValidations, failedValidations
+            );
+        }
+    }
+}
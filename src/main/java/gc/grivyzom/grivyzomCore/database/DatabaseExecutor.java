@@ -0,0 +1,287 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor para el trabajo asíncrono que bloquea en JDBC.
+ *
+ * Usa hilos virtuales si la JVM los soporta (Java 21+) y, si no, un pool
+ * acotado de hilos de plataforma. En ambos casos la concurrencia se limita a
+ * max_concurrency (por defecto max_pool_size), de modo que no se piden más
+ * conexiones de las que tiene el pool y nunca se bloquean los hilos del
+ * ForkJoinPool común que comparten los demás plugins de Velocity.
+ *
+ * Las tareas en espera se limitan a queue_size; con la cola llena, o tras el
+ * cierre, execute() lanza RejectedExecutionException en vez de bloquear su hilo
+ * o descartar la tarea en silencio. {@link #supplyAsync} devuelve entonces un
+ * future fallido, y las tareas que no pueden perderse (guardar a un jugador al
+ * desconectarse) usan {@link #executeLifecycle}, que las ejecuta en el hilo que las envía.
+ */
+public class DatabaseExecutor implements Executor {
+
+    private final Logger logger;
+    private final ExecutorService delegate;
+    private final boolean virtualThreads;
+    private final int maxConcurrency;
+    private final int queueSize;
+
+    // Solo con hilos virtuales: limita las tareas que usan la base de datos a la vez
+    private final Semaphore permits;
+    // Solo con hilos virtuales: tareas enviadas que aún no han terminado
+    private final AtomicInteger submitted = new AtomicInteger();
+
+    // Métricas
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong ranOnCaller = new AtomicLong();
+
+    public DatabaseExecutor(boolean preferVirtualThreads, int maxConcurrency, int queueSize, Logger logger) {
+        this.logger = logger;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.queueSize = Math.max(1, queueSize);
+
+        ExecutorService virtual = preferVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.delegate = virtual;
+            this.virtualThreads = true;
+            this.permits = new Semaphore(this.maxConcurrency, true);
+        } else {
+            this.delegate = createPlatformExecutor(this.maxConcurrency, this.queueSize);
+            this.virtualThreads = false;
+            this.permits = null;
+        }
+
+        MessageUtils.sendInfoMessage(logger, String.format(
+                "🧵 Ejecutor de base de datos: %s (máx. %d tareas concurrentes, %d en espera)",
+                virtualThreads ? "hilos virtuales" : "pool de hilos", this.maxConcurrency, this.queueSize));
+    }
+
+    /**
+     * Crea un ejecutor de hilos virtuales si la JVM lo soporta, o null
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private ExecutorService createPlatformExecutor(int threads, int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "GrivyzomCore-DB-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        // Con la cola llena o tras el cierre se rechaza: ejecutarla en el hilo que la envía lo bloquearía en JDBC
+        RejectedExecutionHandler rejectedHandler = (runnable, executor) -> {
+            throw reject(executor.isShutdown());
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), threadFactory, rejectedHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (permits == null) {
+            delegate.execute(() -> run(task));
+            return;
+        }
+
+        // Con hilos virtuales no hay cola que llenar: se limitan las tareas enviadas y sin terminar
+        if (submitted.incrementAndGet() > maxConcurrency + queueSize) {
+            submitted.decrementAndGet();
+            throw reject(delegate.isShutdown());
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    run(task);
+                } finally {
+                    submitted.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            submitted.decrementAndGet();
+            throw reject(true);
+        }
+    }
+
+    /**
+     * Ejecuta una tarea que no puede descartarse; si se rechaza, se ejecuta en este
+     * mismo hilo (bloqueándolo en JDBC) en lugar de perderla
+     */
+    public void executeLifecycle(Runnable task) {
+        try {
+            execute(task);
+        } catch (RejectedExecutionException e) {
+            ranOnCaller.incrementAndGet();
+            run(task);
+        }
+    }
+
+    /**
+     * Como CompletableFuture.supplyAsync en este ejecutor, pero si se rechaza la tarea
+     * el future termina con la RejectedExecutionException en vez de lanzarla al llamador
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Como CompletableFuture.runAsync en este ejecutor, con el rechazo en el future
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RejectedExecutionException reject(boolean shutdown) {
+        rejected.incrementAndGet();
+        return new RejectedExecutionException(shutdown
+                ? "El ejecutor de base de datos está cerrado"
+                : "Cola del ejecutor de base de datos llena (" + queueSize + " tareas en espera)");
+    }
+
+    private void run(Runnable task) {
+        if (permits != null) {
+            waiting.incrementAndGet();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+                return;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        int running = active.incrementAndGet();
+        peakActive.accumulateAndGet(running, Math::max);
+        try {
+            task.run();
+            completed.incrementAndGet();
+        } catch (RuntimeException | Error e) {
+            failed.incrementAndGet();
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Deja de aceptar tareas y espera a que terminen las pendientes
+     */
+    public void shutdown(long timeoutSeconds) {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                MessageUtils.sendWarningMessage(logger, "⚠ Tareas de base de datos pendientes canceladas al cerrar");
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Obtiene estadísticas del ejecutor
+     */
+    public ExecutorStats getStats() {
+        int queued = virtualThreads
+                ? waiting.get()
+                : ((ThreadPoolExecutor) delegate).getQueue().size();
+        return new ExecutorStats(virtualThreads, maxConcurrency, active.get(), queued,
+                peakActive.get(), completed.get(), failed.get(), rejected.get(), ranOnCaller.get());
+    }
+
+    /**
+     * Clase para estadísticas del ejecutor
+     */
+    public static class ExecutorStats {
+        private final boolean virtualThreads;
+        private final int maxConcurrency;
+        private final int active;
+        private final int queued;
+        private final int peakActive;
+        private final long completed;
+        private final long failed;
+        private final long rejected;
+        private final long ranOnCaller;
+
+        public ExecutorStats(boolean virtualThreads, int maxConcurrency, int active, int queued,
+                             int peakActive, long completed, long failed, long rejected, long ranOnCaller) {
+            this.virtualThreads = virtualThreads;
+            this.maxConcurrency = maxConcurrency;
+            this.active = active;
+            this.queued = queued;
+            this.peakActive = peakActive;
+            this.completed = completed;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.ranOnCaller = ranOnCaller;
+        }
+
+        public boolean isVirtualThreads() { return virtualThreads; }
+        public int getMaxConcurrency() { return maxConcurrency; }
+        public int getActive() { return active; }
+        public int getQueued() { return queued; }
+        public int getPeakActive() { return peakActive; }
+        public long getCompleted() { return completed; }
+        public long getFailed() { return failed; }
+        public long getRejected() { return rejected; }
+        /** Tareas rechazadas que no podían descartarse y se ejecutaron en el hilo que las envió */
+        public long getRanOnCaller() { return ranOnCaller; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "ExecutorStats{mode=%s, active=%d/%d, queued=%d, peak=%d, completed=%d, failed=%d, rejected=%d, " +
+                            "onCaller=%d}",
+                    virtualThreads ? "virtual" : "platform", active, maxConcurrency, queued,
+                    peakActive, completed, failed, rejected, ranOnCaller
+            );
+        }
+    }
+}
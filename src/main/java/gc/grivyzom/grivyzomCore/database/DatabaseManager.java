@@ -4,25 +4,68 @@ import gc.grivyzom.grivyzomCore.config.DatabaseConfigManager;
 import gc.grivyzom.grivyzomCore.utils.MessageUtils;
 import org.slf4j.Logger;
 
+import java.math.BigDecimal;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DatabaseManager {
 
     private final DatabaseConfigManager.DatabaseConfig dbConfig;
     private final Logger logger;
     private final ScheduledExecutorService executor;
+    // Trabajo asíncrono que bloquea en JDBC (fuera del ForkJoinPool común)
+    private final DatabaseExecutor asyncExecutor;
+    private final ConnectionPool connectionPool;
 
-    private Connection connection;
-    private boolean isConnected = false;
+    // Escrituras en espera mientras la base de datos no está disponible (null si está desactivada)
+    private final WriteQueue writeQueue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // Frecuencia con la que se revisa si queda algo en la cola con la conexión disponible
+    private static final int DRAIN_INTERVAL_SECONDS = 5;
+    private static final int DRAIN_BATCH_SIZE = 500;
+
+    // Corta las operaciones mientras la base de datos no responde y programa la reconexión
+    private final CircuitBreaker circuitBreaker;
+
+    // true entre initialize() y close(); la disponibilidad la indica circuitBreaker
+    private volatile boolean isConnected = false;
+
+    // Consultas reintentadas tras encontrar una conexión rota
+    private final AtomicLong retriedQueries = new AtomicLong();
+
+    // Fin del plazo de cierre (System.nanoTime()), o 0 si no se está cerrando
+    private volatile long shutdownDeadline = 0;
 
     public DatabaseManager(DatabaseConfigManager.DatabaseConfig dbConfig, Logger logger) {
         this.dbConfig = dbConfig;
         this.logger = logger;
-        this.executor = Executors.newScheduledThreadPool(2);
+        this.executor = Executors.newScheduledThreadPool(3);
+        this.asyncExecutor = new DatabaseExecutor(dbConfig.isUseVirtualThreads(),
+                dbConfig.getAsyncMaxConcurrency(), dbConfig.getAsyncQueueSize(), logger);
+        this.connectionPool = new ConnectionPool(dbConfig, logger);
+        this.circuitBreaker = new CircuitBreaker(dbConfig.getBreakerFailureThreshold(),
+                dbConfig.getBreakerBaseBackoff(), dbConfig.getBreakerMaxBackoff());
+        this.writeQueue = dbConfig.isWriteQueueEnabled()
+                ? new WriteQueue(dbConfig.getWriteQueueFile(), dbConfig.getWriteQueueMemoryCapacity(),
+                        dbConfig.getWriteQueueDiskCapacity(), logger)
+                : null;
     }
 
     /**
@@ -35,15 +78,8 @@ public class DatabaseManager {
             // Registrar el driver de MySQL
             Class.forName("com.mysql.cj.jdbc.Driver");
 
-            // Establecer conexión
-            connection = DriverManager.getConnection(
-                    dbConfig.getJdbcUrl(),
-                    dbConfig.getUsername(),
-                    dbConfig.getPassword()
-            );
-
-            // Configurar la conexión
-            connection.setAutoCommit(true);
+            // Abrir el pool de conexiones
+            connectionPool.initialize();
 
             isConnected = true;
             MessageUtils.sendSuccessMessage(logger, "✅ Conexión a la base de datos establecida exitosamente");
@@ -54,6 +90,12 @@ public class DatabaseManager {
             // Mostrar información de la base de datos
             showDatabaseInfo();
 
+            // Aplicar las escrituras que quedaron en cola en la ejecución anterior
+            if (writeQueue != null) {
+                writeQueue.load();
+                drainWriteQueue();
+            }
+
             // Iniciar monitoreo de conexión
             startConnectionMonitoring();
 
@@ -69,8 +111,9 @@ public class DatabaseManager {
      * Prueba la conexión a la base de datos
      */
     private void testConnection() throws SQLException {
-        try (Statement statement = connection.createStatement()) {
-            ResultSet rs = statement.executeQuery("SELECT 1");
+        try (Connection connection = connectionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1")) {
             if (rs.next()) {
                 MessageUtils.sendSuccessMessage(logger, "🔗 Prueba de conexión exitosa");
             }
@@ -102,15 +145,38 @@ public class DatabaseManager {
     private void startConnectionMonitoring() {
         executor.scheduleWithFixedDelay(() -> {
             try {
-                if (!isConnectionValid()) {
+                // Con el circuito abierto la reconexión ya está programada
+                if (circuitBreaker.isClosed() && !isConnectionValid() && circuitBreaker.trip()) {
                     MessageUtils.sendWarningMessage(logger, "⚠ Conexión a la base de datos perdida. Intentando reconectar...");
-                    reconnect();
+                    scheduleReconnect();
                 }
             } catch (Exception e) {
                 MessageUtils.sendErrorMessage(logger, "Error en el monitoreo de la base de datos: " + e.getMessage());
             }
         }, 30, 30, TimeUnit.SECONDS);
 
+        // Mantenimiento del pool: inactividad, tiempo de vida, min_idle y fugas
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                connectionPool.runMaintenance();
+            } catch (Exception e) {
+                MessageUtils.sendErrorMessage(logger, "Error en el mantenimiento del pool: " + e.getMessage());
+            }
+        }, 15, 15, TimeUnit.SECONDS);
+
+        // Escrituras que quedaron en cola por un error puntual sin llegar a abrir el circuito
+        if (writeQueue != null) {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    if (circuitBreaker.isClosed() && !writeQueue.isEmpty()) {
+                        drainWriteQueue();
+                    }
+                } catch (Exception e) {
+                    MessageUtils.sendErrorMessage(logger, "Error al vaciar la cola de escrituras: " + e.getMessage());
+                }
+            }, DRAIN_INTERVAL_SECONDS, DRAIN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
         MessageUtils.sendInfoMessage(logger, "📊 Monitoreo de conexión a la base de datos iniciado");
     }
 
@@ -118,36 +184,109 @@ public class DatabaseManager {
      * Verifica si la conexión está activa
      */
     private boolean isConnectionValid() {
-        try {
-            return connection != null && !connection.isClosed() && connection.isValid(5);
+        try (Connection connection = connectionPool.getConnection()) {
+            if (connection.isValid(5)) {
+                return true;
+            }
+            connection.abort(Runnable::run);
+            return false;
         } catch (SQLException e) {
             return false;
         }
     }
 
     /**
-     * Reconecta a la base de datos
+     * Programa el próximo intento de reconexión según la espera del cortocircuito
      */
-    private void reconnect() {
+    private void scheduleReconnect() {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
+            executor.schedule(this::reconnect, circuitBreaker.getMillisUntilNextAttempt(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Cerrando el plugin
+        }
+    }
 
-            connection = DriverManager.getConnection(
-                    dbConfig.getJdbcUrl(),
-                    dbConfig.getUsername(),
-                    dbConfig.getPassword()
-            );
+    /**
+     * Intento de reconexión con el circuito en HALF_OPEN
+     */
+    private void reconnect() {
+        if (!isConnected || !circuitBreaker.tryHalfOpen()) {
+            return;
+        }
 
-            connection.setAutoCommit(true);
-            isConnected = true;
+        // Las conexiones libres probablemente están rotas: descartarlas y abrir nuevas
+        connectionPool.evictIdleConnections();
 
+        boolean valid = isConnectionValid();
+        circuitBreaker.probeResult(valid);
+        if (valid) {
             MessageUtils.sendSuccessMessage(logger, "🔄 Reconexión a la base de datos exitosa");
+            if (writeQueue != null && !writeQueue.isEmpty()) {
+                executor.execute(this::drainWriteQueue);
+            }
+        } else {
+            MessageUtils.sendErrorMessage(logger, String.format(
+                    "❌ Error al reconectar a la base de datos, nuevo intento en %d ms",
+                    circuitBreaker.getMillisUntilNextAttempt()));
+            scheduleReconnect();
+        }
+    }
 
+    /**
+     * Cuenta un error de conexión para el cortocircuito y programa la reconexión si se abre
+     */
+    private void recordConnectionFailure(SQLException e) {
+        if (isConnectionError(e) && circuitBreaker.recordFailure()) {
+            MessageUtils.sendWarningMessage(logger, String.format(
+                    "⚠ Base de datos no disponible: operaciones cortadas, reconexión en %d ms",
+                    circuitBreaker.getMillisUntilNextAttempt()));
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Obtiene una conexión del pool (el pool solo valida las que llevan tiempo inactivas).
+     * Con el circuito abierto falla al instante sin esperar a los timeouts de conexión.
+     */
+    private Connection borrowConnection() throws SQLException {
+        if (!isConnected) {
+            throw new SQLException("No hay conexión activa a la base de datos");
+        }
+        if (isPastShutdownDeadline()) {
+            throw new SQLTimeoutException("Plazo de cierre agotado");
+        }
+        if (!circuitBreaker.allowRequest()) {
+            throw circuitBreaker.rejection();
+        }
+        try {
+            return connectionPool.getConnection();
         } catch (SQLException e) {
-            MessageUtils.sendErrorMessage(logger, "❌ Error al reconectar a la base de datos: " + e.getMessage());
-            isConnected = false;
+            recordConnectionFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Verifica si un error indica que la conexión quedó inutilizable
+     */
+    private boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (state != null && state.startsWith("08"));
+    }
+
+    /**
+     * Descarta la conexión si el error indica que está rota, para que no vuelva al pool
+     */
+    private void discardIfBroken(Connection connection, SQLException e) {
+        if (isConnectionError(e)) {
+            recordConnectionFailure(e);
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException ignored) {
+                // La conexión ya está fuera del pool
+            }
         }
     }
 
@@ -155,60 +294,487 @@ public class DatabaseManager {
      * Ejecuta una consulta de actualización (INSERT, UPDATE, DELETE)
      */
     public int executeUpdate(String sql, Object... parameters) throws SQLException {
-        if (!isConnected || !isConnectionValid()) {
-            throw new SQLException("No hay conexión activa a la base de datos");
+        try (Connection connection = borrowConnection()) {
+            try (PreparedStatement statement = prepare(connection, sql)) {
+                setParameters(statement, parameters);
+                int updated = statement.executeUpdate();
+                circuitBreaker.recordSuccess();
+                return updated;
+            } catch (SQLException e) {
+                // Sin reintento: no se sabe si la escritura llegó a aplicarse
+                discardIfBroken(connection, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una escritura o, si la base de datos no está disponible, la deja en cola
+     * para aplicarla al recuperar la conexión. Devuelve false si quedó en cola.
+     * Solo para escrituras que puedan aplicarse más tarde (valores absolutos).
+     */
+    public boolean executeUpdateOrQueue(String sql, Object... parameters) throws SQLException {
+        if (writeQueue == null) {
+            executeUpdate(sql, parameters);
+            return true;
+        }
+
+        if (!isDegraded() && !isPastShutdownDeadline()) {
+            try {
+                executeUpdate(sql, parameters);
+                return true;
+            } catch (SQLException e) {
+                if (!isConnectionError(e) && !isPastShutdownDeadline()) {
+                    throw e;
+                }
+                // No se sabe si llegó a aplicarse; repetir un valor absoluto no cambia el resultado
+            }
+        }
+
+        if (!writeQueue.offer(sql, parameters)) {
+            throw new SQLException("Cola de escrituras llena (" + writeQueue.size() + " pendientes)");
+        }
+        return false;
+    }
+
+    /**
+     * Aplica en lotes las escrituras en cola; se detiene si vuelve a perderse la conexión
+     */
+    private void drainWriteQueue() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int pending = writeQueue.size();
+            long start = System.nanoTime();
+
+            while (isConnected && circuitBreaker.isClosed() && !isPastShutdownDeadline()) {
+                List<WriteQueue.QueuedWrite> batch = writeQueue.pollBatch(DRAIN_BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                long batchStart = System.nanoTime();
+                try {
+                    applyQueued(batch);
+                    writeQueue.recordDrained(batch, System.nanoTime() - batchStart);
+                } catch (SQLException | RuntimeException e) {
+                    // Sin confirmar el lote la cola seguiría contándolo como en curso
+                    writeQueue.requeue(batch);
+                    MessageUtils.sendErrorMessage(logger, "Error al vaciar la cola de escrituras: " + e.getMessage());
+                    break;
+                }
+            }
+
+            if (pending > 0 && writeQueue.isEmpty()) {
+                MessageUtils.sendSuccessMessage(logger, String.format(
+                        "📤 Cola de escrituras vaciada: %d escrituras en %d ms",
+                        pending, (System.nanoTime() - start) / 1_000_000));
+            }
+        } finally {
+            draining.set(false);
         }
+    }
+
+    /**
+     * Aplica un lote de la cola (todas con la misma sentencia)
+     */
+    private void applyQueued(List<WriteQueue.QueuedWrite> batch) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (WriteQueue.QueuedWrite write : batch) {
+            rows.add(write.getParameters());
+        }
+
+        try {
+            executeBatch(batch.get(0).getSql(), rows);
+        } catch (SQLException e) {
+            if (isConnectionError(e) || !circuitBreaker.isClosed() || isPastShutdownDeadline()) {
+                throw e;
+            }
+            // Error de datos: aplicarlas una a una y descartar solo las que fallen
+            for (WriteQueue.QueuedWrite write : batch) {
+                try {
+                    executeUpdate(write.getSql(), write.getParameters());
+                } catch (SQLException rowError) {
+                    if (isConnectionError(rowError) || isPastShutdownDeadline()) {
+                        throw rowError;
+                    }
+                    writeQueue.recordDiscarded();
+                    MessageUtils.sendErrorMessage(logger, "Escritura en cola descartada: " + rowError.getMessage());
+                }
+            }
+        }
+    }
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    /**
+     * Ejecuta la misma sentencia con varios juegos de parámetros en un solo lote.
+     * Devuelve el resultado de cada fila (Statement.EXECUTE_FAILED si falló).
+     */
+    public int[] executeBatch(String sql, List<Object[]> parameterRows) throws SQLException {
+        try (Connection connection = borrowConnection()) {
+            try (PreparedStatement statement = prepare(connection, sql)) {
+                for (Object[] parameters : parameterRows) {
+                    setParameters(statement, parameters);
+                    statement.addBatch();
+                }
+                int[] updateCounts = statement.executeBatch();
+                circuitBreaker.recordSuccess();
+                return updateCounts;
+            } catch (SQLException e) {
+                discardIfBroken(connection, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Como {@link #executeBatch}, pero sin lanzar la excepción: indica qué filas se
+     * aplicaron y el error, si lo hubo, para reintentar solo las demás
+     */
+    public BatchResult executeBatchPartially(String sql, List<Object[]> parameterRows) {
+        try {
+            return new BatchResult(parameterRows.size(), executeBatch(sql, parameterRows), null);
+        } catch (BatchUpdateException e) {
+            int[] updateCounts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+            return new BatchResult(parameterRows.size(), updateCounts, e);
+        } catch (SQLException e) {
+            return new BatchResult(parameterRows.size(), new int[0], e);
+        }
+    }
+
+    /**
+     * Ejecuta una consulta y convierte cada fila con mapper. La sentencia, el ResultSet y
+     * la conexión se cierran antes de volver. Si la conexión resulta estar rota se
+     * reintenta una vez con otra conexión.
+     */
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        return queryWithRetry(sql, mapper, 0, parameters);
+    }
+
+    /**
+     * Como {@link #query}, pero solo lee la primera fila
+     */
+    public <T> Optional<T> queryOne(String sql, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        List<T> rows = queryWithRetry(sql, mapper, 1, parameters);
+        return rows.isEmpty() ? Optional.empty() : Optional.ofNullable(rows.get(0));
+    }
+
+    /**
+     * Ejecuta {@link #query} en el ejecutor de base de datos
+     */
+    public <T> CompletableFuture<List<T>> queryAsync(String sql, RowMapper<T> mapper, Object... parameters) {
+        return asyncExecutor.supplyAsync(() -> {
+            try {
+                return query(sql, mapper, parameters);
+            } catch (SQLException e) {
+                MessageUtils.sendErrorMessage(logger, "Error en consulta asíncrona: " + e.getMessage());
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    /**
+     * Recorre el resultado fila a fila sin cargarlo entero en memoria, para consultas grandes
+     * (rankings, exportaciones). El Stream ocupa una conexión hasta cerrarlo: usar siempre
+     * con try-with-resources. Con use_cursor_fetch se leen fetchSize filas por viaje mediante
+     * un cursor del servidor; sin él el driver envía las filas de una en una.
+     * Los errores al leer se lanzan como {@link UncheckedSQLException}.
+     */
+    public <T> Stream<T> stream(String sql, int fetchSize, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        Connection connection = borrowConnection();
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+
+        try {
+            statement = limitToShutdownDeadline(
+                    connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+            statement.setFetchSize(dbConfig.isUseCursorFetch() ? Math.max(1, fetchSize) : Integer.MIN_VALUE);
             setParameters(statement, parameters);
-            return statement.executeUpdate();
+            resultSet = statement.executeQuery();
+            circuitBreaker.recordSuccess();
+        } catch (SQLException | RuntimeException e) {
+            releaseAfterError(connection, statement, e);
+            throw e;
+        }
+
+        PreparedStatement openStatement = statement;
+        AtomicBoolean broken = new AtomicBoolean();
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    if (isConnectionError(e)) {
+                        recordConnectionFailure(e);
+                        broken.set(true);
+                    }
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                resultSet.close();
+                openStatement.close();
+            } catch (SQLException ignored) {
+                // Se prioriza devolver la conexión al pool
+            }
+            try {
+                if (broken.get()) {
+                    connection.abort(Runnable::run);
+                } else {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    private <T> List<T> queryWithRetry(String sql, RowMapper<T> mapper, int maxRows,
+                                       Object... parameters) throws SQLException {
+        try {
+            return queryOnce(sql, mapper, maxRows, parameters);
+        } catch (SQLException e) {
+            // Con el circuito abierto no tiene sentido reintentar
+            if (!isConnectionError(e) || !circuitBreaker.isClosed()) {
+                throw e;
+            }
+            retriedQueries.incrementAndGet();
+            return queryOnce(sql, mapper, maxRows, parameters);
+        }
+    }
+
+    private <T> List<T> queryOnce(String sql, RowMapper<T> mapper, int maxRows,
+                                  Object... parameters) throws SQLException {
+        try (Connection connection = borrowConnection()) {
+            try (PreparedStatement statement = prepare(connection, sql)) {
+                setParameters(statement, parameters);
+                if (maxRows > 0) {
+                    statement.setMaxRows(maxRows);
+                }
+
+                List<T> rows = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(mapper.map(rs));
+                    }
+                }
+                circuitBreaker.recordSuccess();
+                return rows;
+            } catch (SQLException e) {
+                discardIfBroken(connection, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una actualización y después una consulta de una fila sobre la misma conexión
+     * (ver {@link #executeUpdateAndQuery}); devuelve la fila convertida con mapper
+     */
+    public <T> Optional<T> updateAndQueryOne(String updateSql, Object[] updateParameters, String querySql,
+                                             RowMapper<T> mapper, Object... queryParameters) throws SQLException {
+        try (ResultSet rs = executeUpdateAndQuery(updateSql, updateParameters, querySql, queryParameters)) {
+            return rs.next() ? Optional.ofNullable(mapper.map(rs)) : Optional.empty();
+        }
+    }
+
+    /**
+     * Cierra la sentencia y devuelve la conexión tras un error al abrir una consulta;
+     * si la conexión está rota se descarta en lugar de devolverla al pool
+     */
+    private void releaseAfterError(Connection connection, PreparedStatement statement,
+                                   Exception e) throws SQLException {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Se prioriza devolver la conexión al pool
+            }
+        }
+        if (e instanceof SQLException && isConnectionError((SQLException) e)) {
+            recordConnectionFailure((SQLException) e);
+            connection.abort(Runnable::run);
+        } else {
+            connection.close();
         }
     }
 
     /**
-     * Ejecuta una consulta de selección (SELECT)
+     * Ejecuta una consulta de selección (SELECT).
+     * Al cerrar el ResultSet se cierran también su sentencia y la conexión prestada.
+     * Si la conexión resulta estar rota se reintenta una vez con otra conexión.
+     * @deprecated el ResultSet mantiene la conexión ocupada hasta que quien llama lo cierra;
+     * usar {@link #query}, {@link #queryOne} o {@link #stream}
      */
+    @Deprecated
     public ResultSet executeQuery(String sql, Object... parameters) throws SQLException {
-        if (!isConnected || !isConnectionValid()) {
-            throw new SQLException("No hay conexión activa a la base de datos");
+        try {
+            return executeQueryOnce(sql, parameters);
+        } catch (SQLException e) {
+            // Con el circuito abierto no tiene sentido reintentar
+            if (!isConnectionError(e) || !circuitBreaker.isClosed()) {
+                throw e;
+            }
+            retriedQueries.incrementAndGet();
+            return executeQueryOnce(sql, parameters);
         }
+    }
+
+    private ResultSet executeQueryOnce(String sql, Object... parameters) throws SQLException {
+        Connection connection = borrowConnection();
+        PreparedStatement statement = null;
 
-        PreparedStatement statement = connection.prepareStatement(sql);
-        setParameters(statement, parameters);
-        return statement.executeQuery();
+        try {
+            statement = prepare(connection, sql);
+            setParameters(statement, parameters);
+            ResultSet resultSet = statement.executeQuery();
+            circuitBreaker.recordSuccess();
+            return closingResultSet(resultSet, statement, connection);
+        } catch (SQLException | RuntimeException e) {
+            releaseAfterError(connection, statement, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Ejecuta una actualización y a continuación una consulta sobre la misma conexión.
+     * Con allow_multi_queries ambas viajan en un único envío al servidor; si no, se
+     * ejecutan una tras otra. Como executeQuery, el ResultSet devuelto debe cerrarse.
+     * Sin reintento: no se sabe si la actualización llegó a aplicarse.
+     */
+    public ResultSet executeUpdateAndQuery(String updateSql, Object[] updateParameters,
+                                           String querySql, Object... queryParameters) throws SQLException {
+        Connection connection = borrowConnection();
+        PreparedStatement statement = null;
+
+        try {
+            if (dbConfig.isAllowMultiQueries()) {
+                Object[] parameters = new Object[updateParameters.length + queryParameters.length];
+                System.arraycopy(updateParameters, 0, parameters, 0, updateParameters.length);
+                System.arraycopy(queryParameters, 0, parameters, updateParameters.length, queryParameters.length);
+
+                statement = prepare(connection, updateSql.strip() + ";\n" + querySql.strip());
+                setParameters(statement, parameters);
+
+                // Saltar el recuento de la actualización hasta llegar al resultado de la consulta
+                boolean hasResultSet = statement.execute();
+                while (!hasResultSet) {
+                    if (statement.getUpdateCount() == -1) {
+                        throw new SQLException("La consulta no devolvió resultados");
+                    }
+                    hasResultSet = statement.getMoreResults();
+                }
+                circuitBreaker.recordSuccess();
+                return closingResultSet(statement.getResultSet(), statement, connection);
+            }
+
+            try (PreparedStatement update = prepare(connection, updateSql)) {
+                setParameters(update, updateParameters);
+                update.executeUpdate();
+            }
+            statement = prepare(connection, querySql);
+            setParameters(statement, queryParameters);
+            ResultSet resultSet = statement.executeQuery();
+            circuitBreaker.recordSuccess();
+            return closingResultSet(resultSet, statement, connection);
+        } catch (SQLException | RuntimeException e) {
+            releaseAfterError(connection, statement, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Envuelve un ResultSet para que su close() libere la sentencia y devuelva la conexión al pool
+     */
+    private ResultSet closingResultSet(ResultSet resultSet, Statement statement, Connection connection) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        try {
+                            resultSet.close();
+                            statement.close();
+                        } finally {
+                            connection.close();
+                        }
+                        return null;
+                    }
+
+                    try {
+                        return method.invoke(resultSet, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     /**
      * Ejecuta una consulta de manera asíncrona
+     * @deprecated el ResultSet cambia de hilo con la conexión aún prestada; usar {@link #queryAsync}
      */
+    @Deprecated
     public CompletableFuture<ResultSet> executeQueryAsync(String sql, Object... parameters) {
-        return CompletableFuture.supplyAsync(() -> {
+        return asyncExecutor.supplyAsync(() -> {
             try {
                 return executeQuery(sql, parameters);
             } catch (SQLException e) {
                 MessageUtils.sendErrorMessage(logger, "Error en consulta asíncrona: " + e.getMessage());
                 throw new RuntimeException(e);
             }
-        }, executor);
+        });
     }
 
     /**
      * Ejecuta una actualización de manera asíncrona
      */
     public CompletableFuture<Integer> executeUpdateAsync(String sql, Object... parameters) {
-        return CompletableFuture.supplyAsync(() -> {
+        return asyncExecutor.supplyAsync(() -> {
             try {
                 return executeUpdate(sql, parameters);
             } catch (SQLException e) {
                 MessageUtils.sendErrorMessage(logger, "Error en actualización asíncrona: " + e.getMessage());
                 throw new RuntimeException(e);
             }
-        }, executor);
+        });
     }
 
     /**
      * Establece los parámetros de un PreparedStatement
      */
+    private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        return limitToShutdownDeadline(connection.prepareStatement(sql));
+    }
+
+    /**
+     * Durante el cierre, limita la sentencia al tiempo que queda del plazo (ver {@link #beginShutdown})
+     */
+    private PreparedStatement limitToShutdownDeadline(PreparedStatement statement) throws SQLException {
+        long deadline = shutdownDeadline;
+        if (deadline != 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                statement.close();
+                throw new SQLTimeoutException("Plazo de cierre agotado");
+            }
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining)));
+        }
+        return statement;
+    }
+
+    private boolean isPastShutdownDeadline() {
+        long deadline = shutdownDeadline;
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+
     private void setParameters(PreparedStatement statement, Object... parameters) throws SQLException {
         for (int i = 0; i < parameters.length; i++) {
             Object param = parameters[i];
@@ -222,6 +788,8 @@ public class DatabaseManager {
                 statement.setLong(i + 1, (Long) param);
             } else if (param instanceof Double) {
                 statement.setDouble(i + 1, (Double) param);
+            } else if (param instanceof BigDecimal) {
+                statement.setBigDecimal(i + 1, (BigDecimal) param);
             } else if (param instanceof Boolean) {
                 statement.setBoolean(i + 1, (Boolean) param);
             } else if (param instanceof Timestamp) {
@@ -236,25 +804,32 @@ public class DatabaseManager {
      * Ejecuta una transacción
      */
     public void executeTransaction(DatabaseTransaction transaction) throws SQLException {
-        if (!isConnected || !isConnectionValid()) {
-            throw new SQLException("No hay conexión activa a la base de datos");
-        }
-
-        boolean originalAutoCommit = connection.getAutoCommit();
-
-        try {
-            connection.setAutoCommit(false);
-            transaction.execute(connection);
-            connection.commit();
+        // Al devolverla, el pool deshace lo que quede sin confirmar y restablece autocommit
+        try (Connection connection = borrowConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                transaction.execute(connection);
+                connection.commit();
+                circuitBreaker.recordSuccess();
 
-            MessageUtils.sendDebugMessage(logger, "Transacción ejecutada exitosamente");
+                MessageUtils.sendDebugMessage(logger, "Transacción ejecutada exitosamente");
 
-        } catch (SQLException e) {
-            connection.rollback();
-            MessageUtils.sendErrorMessage(logger, "Error en transacción, rollback ejecutado: " + e.getMessage());
-            throw e;
-        } finally {
-            connection.setAutoCommit(originalAutoCommit);
+            } catch (SQLException e) {
+                if (isConnectionError(e)) {
+                    // Conexión rota: no hay nada que deshacer en ella y no debe volver al pool
+                    discardIfBroken(connection, e);
+                    MessageUtils.sendErrorMessage(logger, "Error de conexión en transacción: " + e.getMessage());
+                    throw e;
+                }
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                    discardIfBroken(connection, rollbackError);
+                }
+                MessageUtils.sendErrorMessage(logger, "Error en transacción, rollback ejecutado: " + e.getMessage());
+                throw e;
+            }
         }
     }
 
@@ -262,7 +837,7 @@ public class DatabaseManager {
      * Obtiene información básica de la base de datos
      */
     public DatabaseInfo getDatabaseInfo() {
-        try {
+        try (Connection connection = connectionPool.getConnection()) {
             DatabaseMetaData metaData = connection.getMetaData();
             return new DatabaseInfo(
                     metaData.getDatabaseProductName(),
@@ -283,9 +858,8 @@ public class DatabaseManager {
      * Verifica si una tabla existe en la base de datos
      */
     public boolean tableExists(String tableName) {
-        try {
-            DatabaseMetaData metaData = connection.getMetaData();
-            ResultSet tables = metaData.getTables(null, null, tableName, new String[]{"TABLE"});
+        try (Connection connection = connectionPool.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(null, null, tableName, new String[]{"TABLE"})) {
             return tables.next();
         } catch (SQLException e) {
             MessageUtils.sendErrorMessage(logger, "Error al verificar existencia de tabla: " + e.getMessage());
@@ -297,9 +871,8 @@ public class DatabaseManager {
      * Obtiene el número de tablas en la base de datos
      */
     public int getTableCount() {
-        try {
-            DatabaseMetaData metaData = connection.getMetaData();
-            ResultSet tables = metaData.getTables(null, null, "%", new String[]{"TABLE"});
+        try (Connection connection = connectionPool.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
             int count = 0;
             while (tables.next()) {
                 count++;
@@ -311,11 +884,34 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Empieza el cierre: a partir de ahora ninguna sentencia pasa de deadline
+     * (System.nanoTime()); las escrituras que no entren quedan en la cola de escrituras
+     * y close() deja de vaciarla al llegar al plazo
+     */
+    public void beginShutdown(long deadline) {
+        shutdownDeadline = deadline;
+    }
+
     /**
      * Cierra la conexión a la base de datos
      */
     public void close() {
         try {
+            // Dejar terminar las tareas asíncronas pendientes mientras el pool sigue abierto
+            long deadline = shutdownDeadline;
+            asyncExecutor.shutdown(deadline != 0
+                    ? Math.max(0, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()))
+                    : 5);
+
+            // Lo que no se pueda aplicar ahora se guarda en disco para el siguiente inicio
+            if (writeQueue != null) {
+                if (isConnected) {
+                    drainWriteQueue();
+                }
+                writeQueue.persist();
+            }
+
             isConnected = false;
 
             if (executor != null && !executor.isShutdown()) {
@@ -325,10 +921,8 @@ public class DatabaseManager {
                 }
             }
 
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                MessageUtils.sendInfoMessage(logger, "🔌 Conexión a la base de datos cerrada correctamente");
-            }
+            connectionPool.close();
+            MessageUtils.sendInfoMessage(logger, "🔌 Conexiones a la base de datos cerradas correctamente");
 
         } catch (Exception e) {
             MessageUtils.sendErrorMessage(logger, "Error al cerrar la conexión a la base de datos: " + e.getMessage());
@@ -336,12 +930,65 @@ public class DatabaseManager {
     }
 
     // Getters
+
+    /**
+     * Estado de la conexión según el cortocircuito (que la comprobación periódica abre si
+     * se pierde); no pide conexión al pool, así que se puede llamar desde cualquier hilo
+     */
     public boolean isConnected() {
-        return isConnected && isConnectionValid();
+        return isConnected && circuitBreaker.isClosed();
+    }
+
+    /**
+     * Obtiene una conexión del pool; debe cerrarse para devolverla
+     */
+    public Connection getConnection() throws SQLException {
+        return borrowConnection();
     }
 
-    public Connection getConnection() {
-        return connection;
+    public ConnectionPool.PoolStats getPoolStats() {
+        return connectionPool.getStats();
+    }
+
+    public long getRetriedQueries() {
+        return retriedQueries.get();
+    }
+
+    /**
+     * Verifica si las escrituras se están aplazando: circuito abierto o cola aún por vaciar
+     */
+    public boolean isDegraded() {
+        return !isConnected || !circuitBreaker.isClosed() || (writeQueue != null && !writeQueue.isEmpty());
+    }
+
+    public CircuitBreaker.BreakerStats getBreakerStats() {
+        return circuitBreaker.getStats();
+    }
+
+    public boolean isWriteQueueEnabled() {
+        return writeQueue != null;
+    }
+
+    /**
+     * Verifica si quedan escrituras en la cola esperando a la base de datos
+     */
+    public boolean hasQueuedWrites() {
+        return writeQueue != null && !writeQueue.isEmpty();
+    }
+
+    public WriteQueue.QueueStats getWriteQueueStats() {
+        return writeQueue != null ? writeQueue.getStats() : null;
+    }
+
+    /**
+     * Ejecutor para trabajo asíncrono que usa la base de datos
+     */
+    public DatabaseExecutor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public DatabaseExecutor.ExecutorStats getExecutorStats() {
+        return asyncExecutor.getStats();
     }
 
     public DatabaseConfigManager.DatabaseConfig getDbConfig() {
@@ -356,6 +1003,42 @@ public class DatabaseManager {
         void execute(Connection connection) throws SQLException;
     }
 
+    /**
+     * Resultado de un lote ejecutado con {@link #executeBatchPartially}
+     */
+    public static class BatchResult {
+        private final int rows;
+        private final int[] updateCounts;
+        private final SQLException error;
+
+        public BatchResult(int rows, int[] updateCounts, SQLException error) {
+            this.rows = rows;
+            this.updateCounts = updateCounts;
+            this.error = error;
+        }
+
+        /**
+         * Verifica si una fila se aplicó; sin resultado para la fila = el driver
+         * detuvo el lote antes de llegar a ella
+         */
+        public boolean isApplied(int row) {
+            return row < updateCounts.length && updateCounts[row] != Statement.EXECUTE_FAILED;
+        }
+
+        public int getFailedRows() {
+            int failed = 0;
+            for (int row = 0; row < rows; row++) {
+                if (!isApplied(row)) {
+                    failed++;
+                }
+            }
+            return failed;
+        }
+
+        /** Error del lote, o null si se aplicó entero */
+        public SQLException getError() { return error; }
+    }
+
     /**
      * Clase para información de la base de datos
      */
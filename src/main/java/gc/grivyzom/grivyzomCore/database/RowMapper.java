@@ -0,0 +1,13 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en un objeto.
+ * No debe mover el cursor ni guardar el ResultSet: se cierra al terminar la consulta.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
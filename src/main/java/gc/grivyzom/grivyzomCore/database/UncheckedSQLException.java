@@ -0,0 +1,21 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import java.sql.SQLException;
+
+/**
+ * SQLException lanzada donde no se admiten excepciones comprobadas: al recorrer un
+ * Stream de {@link DatabaseManager#stream} o dentro de un CompletableFuture
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,559 @@
+package gc.grivyzom.grivyzomCore.database;
+
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de escrituras pendientes mientras la base de datos no está disponible.
+ *
+ * Con disk_capacity > 0 cada escritura se añade al archivo en cuanto se encola,
+ * así que la cola sobrevive a una caída del proxy. Las primeras (hasta
+ * memory_capacity) se guardan también en memoria para aplicarlas sin leer el
+ * disco; las siguientes solo están en el archivo (hasta disk_capacity) y se leen
+ * a medida que se vacía la cola. La cabecera del archivo indica cuántas ya se
+ * aplicaron, para no repetirlas al iniciar, y el archivo se vacía cada vez que
+ * la cola queda vacía. Solo deben encolarse escrituras que puedan aplicarse más
+ * tarde (valores absolutos, no incrementos).
+ */
+public class WriteQueue {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_TIMESTAMP = 5;
+    private static final byte TYPE_DECIMAL = 6;
+    private static final byte TYPE_DOUBLE = 7;
+
+    // Cabecera del archivo: número de escrituras del archivo ya aplicadas
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private final int memoryCapacity;
+    private final int diskCapacity;
+    private final Logger logger;
+
+    private final Deque<QueuedWrite> memory = new ArrayDeque<>();
+    // Escrituras que solo están en el archivo
+    private int diskEntries = 0;
+    // Sacadas con pollBatch y aún sin confirmar con recordDrained o requeue
+    private int inFlight = 0;
+
+    // Archivo abierto por load() (null sin disco o si no se pudo abrir)
+    private FileChannel channel;
+    private long appliedEntries = 0;
+    // Posición de la primera escritura que no está en memoria y final del archivo
+    private long readOffset = HEADER_SIZE;
+    private long endOffset = HEADER_SIZE;
+    private boolean readErrorReported = false;
+
+    // memoria + disco + en curso, legible sin bloqueo
+    private volatile int depth = 0;
+
+    // Métricas
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong drainBatches = new AtomicLong();
+    private final AtomicLong drainNanos = new AtomicLong();
+    private volatile int peakDepth = 0;
+
+    public WriteQueue(Path file, int memoryCapacity, int diskCapacity, Logger logger) {
+        this.file = file;
+        this.memoryCapacity = Math.max(1, memoryCapacity);
+        this.diskCapacity = Math.max(0, diskCapacity);
+        this.logger = logger;
+    }
+
+    /**
+     * Carga las escrituras que quedaron sin aplicar al cerrar o caerse el proxy y
+     * abre el archivo para las nuevas. Si no se puede leer, el archivo se conserva
+     * intacto y la cola funciona solo en memoria.
+     */
+    public synchronized void load() {
+        if (diskCapacity == 0) {
+            return;
+        }
+        try {
+            List<QueuedWrite> entries = Files.exists(file) ? readPending() : List.of();
+
+            // Se reescribe solo con lo que falta por aplicar, ya en memoria
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(0);
+                for (QueuedWrite write : entries) {
+                    byte[] data = encode(write);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    write.logged = true;
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            endOffset = channel.size();
+            readOffset = endOffset;
+            appliedEntries = 0;
+            memory.addAll(entries);
+            updateDepth();
+            if (!entries.isEmpty()) {
+                MessageUtils.sendInfoMessage(logger, String.format(
+                        "📥 %d escrituras pendientes recuperadas de %s", entries.size(), file.getFileName()));
+            }
+        } catch (IOException e) {
+            MessageUtils.sendErrorMessage(logger, String.format(
+                    "Error al leer las escrituras pendientes, se conserva %s y la cola queda solo en memoria: %s",
+                    file.getFileName(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Añade una escritura a la cola; devuelve false si la cola está llena
+     */
+    public synchronized boolean offer(String sql, Object[] parameters) {
+        QueuedWrite write = new QueuedWrite(sql, parameters);
+
+        // En memoria solo mientras no haya nada pendiente en disco, para respetar el orden
+        boolean inMemory = diskEntries == 0 && memory.size() < memoryCapacity;
+        if (!inMemory && (channel == null || diskEntries >= diskCapacity)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (channel != null && !append(write) && !inMemory) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        if (inMemory) {
+            memory.addLast(write);
+            readOffset = endOffset;
+        } else {
+            diskEntries++;
+            spilled.incrementAndGet();
+        }
+        queued.incrementAndGet();
+        updateDepth();
+        return true;
+    }
+
+    /**
+     * Saca las siguientes escrituras con la misma sentencia (hasta max) para aplicarlas en un lote.
+     * Siguen contando en la cola hasta confirmarlas con {@link #recordDrained} o {@link #requeue}.
+     */
+    public synchronized List<QueuedWrite> pollBatch(int max) {
+        if (memory.isEmpty() && diskEntries > 0) {
+            try {
+                readFromDisk();
+                readErrorReported = false;
+            } catch (IOException e) {
+                // Se conserva el archivo: se vuelve a intentar en el siguiente vaciado
+                if (!readErrorReported) {
+                    readErrorReported = true;
+                    MessageUtils.sendErrorMessage(logger, String.format(
+                            "Error al leer las escrituras pendientes (%d en disco), se reintentará: %s",
+                            diskEntries, e.getMessage()));
+                }
+            }
+        }
+
+        List<QueuedWrite> batch = new ArrayList<>();
+        QueuedWrite head = memory.peekFirst();
+        while (head != null && batch.size() < max && (batch.isEmpty() || head.sql.equals(batch.get(0).sql))) {
+            batch.add(memory.pollFirst());
+            head = memory.peekFirst();
+        }
+        inFlight += batch.size();
+        updateDepth();
+        return batch;
+    }
+
+    /**
+     * Devuelve al principio de la cola un lote que no se pudo aplicar
+     */
+    public synchronized void requeue(List<QueuedWrite> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            memory.addFirst(batch.get(i));
+        }
+        inFlight -= batch.size();
+        updateDepth();
+    }
+
+    /**
+     * Registra un lote aplicado en la base de datos (incluidas las escrituras descartadas)
+     */
+    public synchronized void recordDrained(List<QueuedWrite> batch, long nanos) {
+        inFlight -= batch.size();
+        for (QueuedWrite write : batch) {
+            if (write.logged) {
+                appliedEntries++;
+            }
+        }
+        updateDepth();
+        updateFile();
+
+        drained.addAndGet(batch.size());
+        drainBatches.incrementAndGet();
+        drainNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Registra una escritura descartada por un error que no es de conexión
+     */
+    public void recordDiscarded() {
+        discarded.incrementAndGet();
+    }
+
+    /**
+     * Cierra el archivo al cerrar el plugin; lo pendiente ya está en él y se aplicará al iniciar
+     */
+    public synchronized void persist() {
+        int unlogged = 0;
+        for (QueuedWrite write : memory) {
+            if (!write.logged) {
+                unlogged++;
+            }
+        }
+
+        if (channel != null) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                MessageUtils.sendErrorMessage(logger, "Error al cerrar las escrituras pendientes: " + e.getMessage());
+            }
+            channel = null;
+            if (depth > unlogged) {
+                MessageUtils.sendWarningMessage(logger, String.format(
+                        "⚠ %d escrituras pendientes guardadas en %s, se aplicarán al iniciar",
+                        depth - unlogged, file.getFileName()));
+            }
+        }
+        if (unlogged > 0) {
+            MessageUtils.sendWarningMessage(logger, String.format(
+                    "⚠ %d escrituras pendientes descartadas (solo estaban en memoria)", unlogged));
+        }
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    public int size() {
+        return depth;
+    }
+
+    private void updateDepth() {
+        depth = memory.size() + diskEntries + inFlight;
+        if (depth > peakDepth) {
+            peakDepth = depth;
+        }
+    }
+
+    /**
+     * Añade una escritura al final del archivo; false si no se pudo
+     */
+    private boolean append(QueuedWrite write) {
+        try {
+            byte[] data = encode(write);
+            ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
+            buffer.putInt(data.length).put(data).flip();
+            long position = endOffset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            endOffset = position;
+            write.logged = true;
+            return true;
+        } catch (IOException e) {
+            MessageUtils.sendErrorMessage(logger, "Error al guardar una escritura pendiente en disco: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Pasa a memoria las siguientes escrituras que solo están en el archivo (hasta memory_capacity)
+     */
+    private void readFromDisk() throws IOException {
+        if (channel == null) {
+            throw new IOException("archivo no disponible");
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long position = readOffset;
+        List<QueuedWrite> entries = new ArrayList<>();
+
+        while (entries.size() < diskEntries && entries.size() < memoryCapacity) {
+            length.clear();
+            readFully(length, position);
+            length.flip();
+            ByteBuffer data = ByteBuffer.allocate(length.getInt());
+            readFully(data, position + 4);
+
+            QueuedWrite write = decode(new DataInputStream(new ByteArrayInputStream(data.array())));
+            write.logged = true;
+            entries.add(write);
+            position += 4 + data.capacity();
+        }
+
+        memory.addAll(entries);
+        diskEntries -= entries.size();
+        readOffset = position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("escritura pendiente incompleta en " + file.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Anota en la cabecera las escrituras ya aplicadas; con la cola vacía, vacía el archivo
+     */
+    private void updateFile() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (depth == 0) {
+                channel.truncate(HEADER_SIZE);
+                appliedEntries = 0;
+                readOffset = HEADER_SIZE;
+                endOffset = HEADER_SIZE;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(appliedEntries).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } catch (IOException e) {
+            // Al iniciar se repetirían escrituras ya aplicadas (valores absolutos, mismo resultado)
+            MessageUtils.sendErrorMessage(logger, "Error al actualizar las escrituras pendientes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee del archivo las escrituras que faltan por aplicar.
+     * Una entrada incompleta al final (caída mientras se escribía) se descarta.
+     */
+    private List<QueuedWrite> readPending() throws IOException {
+        List<QueuedWrite> entries = new ArrayList<>();
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            long applied;
+            try {
+                applied = in.readLong();
+            } catch (EOFException empty) {
+                return entries;
+            }
+
+            for (long index = 0; ; index++) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                if (index >= applied) {
+                    entries.add(decode(new DataInputStream(new ByteArrayInputStream(data))));
+                }
+            }
+        } catch (EOFException e) {
+            MessageUtils.sendWarningMessage(logger, "⚠ Escritura pendiente incompleta descartada en " + file.getFileName());
+        }
+        return entries;
+    }
+
+    private static byte[] encode(QueuedWrite write) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeEntry(out, write);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static QueuedWrite decode(DataInputStream in) throws IOException {
+        String sql = in.readUTF();
+        Object[] parameters = new Object[in.readUnsignedShort()];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = readValue(in);
+        }
+        return new QueuedWrite(sql, parameters, in.readLong());
+    }
+
+    private static void writeEntry(DataOutputStream out, QueuedWrite write) throws IOException {
+        out.writeUTF(write.sql);
+        out.writeShort(write.parameters.length);
+        for (Object value : write.parameters) {
+            writeValue(out, value);
+        }
+        out.writeLong(write.queuedAt);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TYPE_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else {
+            throw new IOException("Tipo de parámetro no soportado: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_NULL -> null;
+            case TYPE_STRING -> in.readUTF();
+            case TYPE_INT -> in.readInt();
+            case TYPE_LONG -> in.readLong();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_TIMESTAMP -> new Timestamp(in.readLong());
+            case TYPE_DECIMAL -> new BigDecimal(in.readUTF());
+            case TYPE_DOUBLE -> in.readDouble();
+            default -> throw new IOException("Tipo de parámetro desconocido: " + type);
+        };
+    }
+
+    /**
+     * Obtiene estadísticas de la cola
+     */
+    public QueueStats getStats() {
+        int onDisk;
+        synchronized (this) {
+            onDisk = diskEntries;
+        }
+        return new QueueStats(depth, onDisk, peakDepth, queued.get(), spilled.get(), rejected.get(),
+                drained.get(), discarded.get(), drainBatches.get(), drainNanos.get());
+    }
+
+    /**
+     * Escritura en espera
+     */
+    public static final class QueuedWrite {
+        private final String sql;
+        private final Object[] parameters;
+        private final long queuedAt;
+        // true si también está en el archivo
+        private boolean logged = false;
+
+        private QueuedWrite(String sql, Object[] parameters) {
+            this(sql, parameters, System.currentTimeMillis());
+        }
+
+        private QueuedWrite(String sql, Object[] parameters, long queuedAt) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.queuedAt = queuedAt;
+        }
+
+        public String getSql() { return sql; }
+        public Object[] getParameters() { return parameters; }
+        public long getQueuedAt() { return queuedAt; }
+    }
+
+    /**
+     * Clase para estadísticas de la cola de escrituras
+     */
+    public static class QueueStats {
+        private final int depth;
+        private final int onDisk;
+        private final int peakDepth;
+        private final long queued;
+        private final long spilled;
+        private final long rejected;
+        private final long drained;
+        private final long discarded;
+        private final long drainBatches;
+        private final long drainNanos;
+
+        public QueueStats(int depth, int onDisk, int peakDepth, long queued, long spilled, long rejected,
+                          long drained, long discarded, long drainBatches, long drainNanos) {
+            this.depth = depth;
+            this.onDisk = onDisk;
+            this.peakDepth = peakDepth;
+            this.queued = queued;
+            this.spilled = spilled;
+            this.rejected = rejected;
+            this.drained = drained;
+            this.discarded = discarded;
+            this.drainBatches = drainBatches;
+            this.drainNanos = drainNanos;
+        }
+
+        public int getDepth() { return depth; }
+        public int getOnDisk() { return onDisk; }
+        public int getPeakDepth() { return peakDepth; }
+        public long getQueued() { return queued; }
+        public long getSpilled() { return spilled; }
+        public long getRejected() { return rejected; }
+        public long getDrained() { return drained; }
+        public long getDiscarded() { return discarded; }
+        public long getDrainBatches() { return drainBatches; }
+
+        /**
+         * Escrituras aplicadas por segundo mientras se vaciaba la cola
+         */
+        public double getDrainRate() {
+            return drainNanos == 0 ? 0.0 : drained * 1_000_000_000.0 / drainNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "QueueStats{depth=%d, onDisk=%d, peak=%d, queued=%d, spilled=%d, rejected=%d, " +
+                            "drained=%d, discarded=%d, batches=%d, drainRate=%.1f/s}",
+                    depth, onDisk, peakDepth, queued, spilled, rejected,
+                    drained, discarded, drainBatches, getDrainRate()
+            );
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package gc.grivyzom.grivyzomCore.leaderboard;
+
+import java.util.UUID;
+
+/**
+ * Posición de un jugador en un ranking.
+ * Para monedas la puntuación va en unidades mínimas y para tiempo de juego en milisegundos.
+ */
+public class LeaderboardEntry {
+
+    private final int rank;
+    private final UUID uuid;
+    private final String username;
+    private final long score;
+
+    public LeaderboardEntry(int rank, UUID uuid, String username, long score) {
+        this.rank = rank;
+        this.uuid = uuid;
+        this.username = username;
+        this.score = score;
+    }
+
+    public int getRank() { return rank; }
+    public UUID getUuid() { return uuid; }
+    public String getUsername() { return username; }
+    public long getScore() { return score; }
+
+    @Override
+    public String toString() {
+        return String.format("LeaderboardEntry{rank=%d, uuid=%s, username='%s', score=%d}",
+                rank, uuid, username, score);
+    }
+}
@@ -0,0 +1,323 @@
+package gc.grivyzom.grivyzomCore.leaderboard;
+
+import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.database.UncheckedSQLException;
+import gc.grivyzom.grivyzomCore.models.Coins;
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+import gc.grivyzom.grivyzomCore.models.PlayerChangeListener;
+import gc.grivyzom.grivyzomCore.models.PlayerField;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Rankings en memoria de monedas, gemas y tiempo de juego.
+ *
+ * Se cargan una vez desde la base de datos al iniciar y después se actualizan
+ * con cada cambio de los jugadores online (ver {@link PlayerChangeListener}).
+ * Cada reconcile_interval se vuelven a comparar con la base de datos para
+ * recoger cambios hechos fuera del proxy; para los jugadores online manda
+ * siempre el valor en memoria.
+ */
+public class LeaderboardManager implements PlayerChangeListener {
+
+    private static final String SELECT_SCORES =
+            "SELECT uuid, username, coins, gems, total_playtime FROM grivyzom_players";
+
+    // Filas leídas por viaje al recorrer la tabla en reconcile()
+    private static final int RECONCILE_FETCH_SIZE = 1000;
+
+    private final DatabaseManager databaseManager;
+    private final Supplier<Collection<GrivyzomPlayer>> playerSource;
+    private final Logger logger;
+
+    private final Map<PlayerField, RankedIndex> indexes = new EnumMap<>(PlayerField.class);
+    private final Map<UUID, String> usernames = new ConcurrentHashMap<>();
+
+    // Hilo propio: reconcile() recorre la tabla entera y no debe retrasar el guardado automático
+    private ScheduledExecutorService reconcileScheduler;
+
+    // Métricas
+    private volatile boolean loaded = false;
+    private volatile long reconciliations = 0;
+    private volatile long corrections = 0;
+    private volatile long lastReconcileMs = 0;
+
+    public LeaderboardManager(DatabaseManager databaseManager,
+                              Supplier<Collection<GrivyzomPlayer>> playerSource, Logger logger) {
+        this.databaseManager = databaseManager;
+        this.playerSource = playerSource;
+        this.logger = logger;
+        indexes.put(PlayerField.COINS, new RankedIndex());
+        indexes.put(PlayerField.GEMS, new RankedIndex());
+        indexes.put(PlayerField.TOTAL_PLAYTIME, new RankedIndex());
+    }
+
+    /**
+     * Programa la carga inicial y la reconciliación periódica con la base de datos
+     */
+    public void start(int reconcileIntervalSeconds) {
+        reconcileScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GrivyzomCore-leaderboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconcileScheduler.execute(this::runReconcile);
+        if (reconcileIntervalSeconds > 0) {
+            reconcileScheduler.scheduleWithFixedDelay(this::runReconcile,
+                    reconcileIntervalSeconds, reconcileIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Detiene la reconciliación periódica; una en curso se interrumpe
+     */
+    public void shutdown() {
+        if (reconcileScheduler != null) {
+            reconcileScheduler.shutdownNow();
+        }
+    }
+
+    private void runReconcile() {
+        try {
+            reconcile();
+        } catch (SQLException e) {
+            MessageUtils.sendErrorMessage(logger, "Error al sincronizar los rankings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compara los rankings con la base de datos y corrige las diferencias
+     */
+    public void reconcile() throws SQLException {
+        long start = System.nanoTime();
+
+        Map<UUID, GrivyzomPlayer> online = new HashMap<>();
+        for (GrivyzomPlayer player : playerSource.get()) {
+            online.put(player.getUuid(), player);
+        }
+
+        Set<UUID> seen = new HashSet<>();
+        long changed = 0;
+
+        // La tabla completa se lee por bloques, sin cargarla entera en memoria
+        try (Stream<ScoreRow> rows = databaseManager.stream(SELECT_SCORES, RECONCILE_FETCH_SIZE, ScoreRow::new)) {
+            Iterator<ScoreRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ScoreRow row = iterator.next();
+                seen.add(row.uuid);
+
+                // Los jugadores online pueden tener cambios aún no guardados
+                if (online.containsKey(row.uuid)) {
+                    continue;
+                }
+
+                usernames.put(row.uuid, row.username);
+                changed += apply(row.uuid, PlayerField.COINS, row.coinsMinor);
+                changed += apply(row.uuid, PlayerField.GEMS, row.gems);
+                changed += apply(row.uuid, PlayerField.TOTAL_PLAYTIME, row.totalPlaytime);
+            }
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+
+        for (GrivyzomPlayer player : online.values()) {
+            seen.add(player.getUuid());
+            changed += refresh(player);
+        }
+
+        // Jugadores borrados de la base de datos
+        for (RankedIndex index : indexes.values()) {
+            for (UUID uuid : index.keys()) {
+                if (!seen.contains(uuid)) {
+                    index.remove(uuid);
+                    usernames.remove(uuid);
+                    changed++;
+                }
+            }
+        }
+
+        lastReconcileMs = (System.nanoTime() - start) / 1_000_000;
+        if (!loaded) {
+            loaded = true;
+            MessageUtils.sendSuccessMessage(logger, String.format(
+                    "🏆 Rankings cargados: %d jugadores en %d ms", seen.size(), lastReconcileMs));
+        } else {
+            reconciliations++;
+            corrections += changed;
+        }
+    }
+
+    /**
+     * Actualiza las posiciones de un jugador que acaba de cargarse; sus cambios
+     * posteriores llegan por {@link #onFieldChanged}
+     */
+    public void track(GrivyzomPlayer player) {
+        refresh(player);
+    }
+
+    @Override
+    public void onFieldChanged(GrivyzomPlayer player, PlayerField field) {
+        RankedIndex index = indexes.get(field);
+        if (index != null) {
+            index.update(player.getUuid(), scoreOf(player, field));
+        }
+    }
+
+    /**
+     * Actualiza la puntuación de un jugador que no está cargado (p.ej. tras un cambio directo en la base de datos)
+     */
+    public void update(UUID uuid, PlayerField field, long score) {
+        RankedIndex index = indexes.get(field);
+        if (index != null) {
+            index.update(uuid, score);
+        }
+    }
+
+    /**
+     * Obtiene los primeros puestos de un ranking
+     */
+    public List<LeaderboardEntry> getTop(PlayerField field, int limit) {
+        return getPage(field, 0, limit);
+    }
+
+    /**
+     * Obtiene una página de un ranking a partir de la posición offset (desde 0)
+     */
+    public List<LeaderboardEntry> getPage(PlayerField field, int offset, int limit) {
+        RankedIndex index = requireIndex(field);
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (RankedIndex.Ranked ranked : index.range(offset, limit)) {
+            entries.add(new LeaderboardEntry(ranked.getRank(), ranked.getUuid(),
+                    usernames.get(ranked.getUuid()), ranked.getScore()));
+        }
+        return entries;
+    }
+
+    /**
+     * Obtiene la posición (desde 1) de un jugador en un ranking, o 0 si no aparece
+     */
+    public int getRank(PlayerField field, UUID uuid) {
+        return requireIndex(field).rankOf(uuid);
+    }
+
+    /**
+     * Verifica si existe un ranking para el campo indicado
+     */
+    public boolean isRanked(PlayerField field) {
+        return indexes.containsKey(field);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private int refresh(GrivyzomPlayer player) {
+        usernames.put(player.getUuid(), player.getUsername());
+        int changed = 0;
+        for (PlayerField field : indexes.keySet()) {
+            changed += apply(player.getUuid(), field, scoreOf(player, field));
+        }
+        return changed;
+    }
+
+    private int apply(UUID uuid, PlayerField field, long score) {
+        return indexes.get(field).update(uuid, score) ? 1 : 0;
+    }
+
+    private RankedIndex requireIndex(PlayerField field) {
+        RankedIndex index = indexes.get(field);
+        if (index == null) {
+            throw new IllegalArgumentException("No hay ranking para el campo " + field);
+        }
+        return index;
+    }
+
+    private static long scoreOf(GrivyzomPlayer player, PlayerField field) {
+        return switch (field) {
+            case COINS -> player.getCoinsMinor();
+            case GEMS -> player.getGems();
+            case TOTAL_PLAYTIME -> player.getTotalPlaytime();
+            default -> 0L;
+        };
+    }
+
+    /**
+     * Puntuaciones de una fila de grivyzom_players
+     */
+    private static final class ScoreRow {
+        private final UUID uuid;
+        private final String username;
+        private final long coinsMinor;
+        private final int gems;
+        private final long totalPlaytime;
+
+        private ScoreRow(ResultSet rs) throws SQLException {
+            this.uuid = UUID.fromString(rs.getString("uuid"));
+            this.username = rs.getString("username");
+            this.coinsMinor = Coins.fromDecimal(rs.getBigDecimal("coins"));
+            this.gems = rs.getInt("gems");
+            this.totalPlaytime = rs.getLong("total_playtime");
+        }
+    }
+
+    /**
+     * Obtiene estadísticas de los rankings
+     */
+    public LeaderboardStats getStats() {
+        return new LeaderboardStats(indexes.get(PlayerField.COINS).size(), loaded,
+                reconciliations, corrections, lastReconcileMs);
+    }
+
+    /**
+     * Clase para estadísticas de los rankings
+     */
+    public static class LeaderboardStats {
+        private final int entries;
+        private final boolean loaded;
+        private final long reconciliations;
+        private final long corrections;
+        private final long lastReconcileMs;
+
+        public LeaderboardStats(int entries, boolean loaded, long reconciliations,
+                                long corrections, long lastReconcileMs) {
+            this.entries = entries;
+            this.loaded = loaded;
+            this.reconciliations = reconciliations;
+            this.corrections = corrections;
+            this.lastReconcileMs = lastReconcileMs;
+        }
+
+        public int getEntries() { return entries; }
+        public boolean isLoaded() { return loaded; }
+        public long getReconciliations() { return reconciliations; }
+        public long getCorrections() { return corrections; }
+        public long getLastReconcileMs() { return lastReconcileMs; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "LeaderboardStats{entries=%d, loaded=%s, reconciliations=%d, corrections=%d, lastReconcileMs=%d}",
+                    entries, loaded, reconciliations, corrections, lastReconcileMs
+            );
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package gc.grivyzom.grivyzomCore.leaderboard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Índice ordenado de puntuaciones por jugador (árbol de estadísticas de orden).
+ *
+ * Implementado como un treap con el tamaño de cada subárbol, de modo que
+ * actualizar una puntuación, obtener la posición de un jugador y leer el top N
+ * cuestan O(log n) (más N para el top). El orden es de mayor a menor puntuación
+ * y, a igual puntuación, por UUID para que sea estable.
+ */
+public class RankedIndex {
+
+    private final Map<UUID, Long> scores = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    /**
+     * Inserta o actualiza la puntuación de un jugador.
+     * Devuelve true si la puntuación cambió.
+     */
+    public synchronized boolean update(UUID uuid, long score) {
+        Long previous = scores.put(uuid, score);
+        if (previous != null) {
+            if (previous == score) {
+                return false;
+            }
+            root = remove(root, previous, uuid);
+        }
+        root = insert(root, new Node(uuid, score, random.nextInt()));
+        return true;
+    }
+
+    /**
+     * Elimina a un jugador del índice
+     */
+    public synchronized boolean remove(UUID uuid) {
+        Long previous = scores.remove(uuid);
+        if (previous == null) {
+            return false;
+        }
+        root = remove(root, previous, uuid);
+        return true;
+    }
+
+    /**
+     * Obtiene la puntuación de un jugador, o null si no está en el índice
+     */
+    public synchronized Long getScore(UUID uuid) {
+        return scores.get(uuid);
+    }
+
+    /**
+     * Obtiene la posición (desde 1) de un jugador, o 0 si no está en el índice
+     */
+    public synchronized int rankOf(UUID uuid) {
+        Long score = scores.get(uuid);
+        if (score == null) {
+            return 0;
+        }
+
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(score, uuid, node);
+            if (cmp == 0) {
+                return before + size(node.left) + 1;
+            }
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Obtiene los primeros jugadores del índice en orden, saltando los offset primeros
+     */
+    public synchronized List<Ranked> range(int offset, int limit) {
+        List<Ranked> result = new ArrayList<>(Math.max(0, Math.min(limit, size(root) - offset)));
+        if (limit <= 0 || offset >= size(root)) {
+            return result;
+        }
+
+        // Bajar hasta la posición offset guardando el camino para el recorrido en orden
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        int skip = offset;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (skip < leftSize) {
+                stack.push(node);
+                node = node.left;
+            } else if (skip == leftSize) {
+                stack.push(node);
+                break;
+            } else {
+                skip -= leftSize + 1;
+                node = node.right;
+            }
+        }
+
+        int rank = offset + 1;
+        while (!stack.isEmpty() && result.size() < limit) {
+            Node current = stack.pop();
+            result.add(new Ranked(rank++, current.uuid, current.score));
+            for (Node next = current.right; next != null; next = next.left) {
+                stack.push(next);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copia de los jugadores presentes en el índice
+     */
+    public synchronized List<UUID> keys() {
+        return new ArrayList<>(scores.keySet());
+    }
+
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    public synchronized void clear() {
+        scores.clear();
+        root = null;
+    }
+
+    // Orden: puntuación descendente, luego UUID ascendente
+    private static int compare(long score, UUID uuid, Node node) {
+        int cmp = Long.compare(node.score, score);
+        return cmp != 0 ? cmp : uuid.compareTo(node.uuid);
+    }
+
+    private Node insert(Node node, Node created) {
+        if (node == null) {
+            return created;
+        }
+        if (created.priority > node.priority) {
+            Node[] parts = split(node, created.score, created.uuid);
+            created.left = parts[0];
+            created.right = parts[1];
+            created.update();
+            return created;
+        }
+        if (compare(created.score, created.uuid, node) < 0) {
+            node.left = insert(node.left, created);
+        } else {
+            node.right = insert(node.right, created);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node remove(Node node, long score, UUID uuid) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(score, uuid, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, score, uuid);
+        } else {
+            node.right = remove(node.right, score, uuid);
+        }
+        node.update();
+        return node;
+    }
+
+    // Divide en [nodos antes de la clave, nodos después de la clave]
+    private static Node[] split(Node node, long score, UUID uuid) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (compare(score, uuid, node) > 0) {
+            Node[] parts = split(node.right, score, uuid);
+            node.right = parts[0];
+            node.update();
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, score, uuid);
+        node.left = parts[1];
+        node.update();
+        return new Node[]{parts[0], node};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final UUID uuid;
+        private final long score;
+        private final int priority;
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(UUID uuid, long score, int priority) {
+            this.uuid = uuid;
+            this.score = score;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = 1 + RankedIndex.size(left) + RankedIndex.size(right);
+        }
+    }
+
+    /**
+     * Posición de un jugador dentro del índice
+     */
+    public static final class Ranked {
+        private final int rank;
+        private final UUID uuid;
+        private final long score;
+
+        private Ranked(int rank, UUID uuid, long score) {
+            this.rank = rank;
+            this.uuid = uuid;
+            this.score = score;
+        }
+
+        public int getRank() { return rank; }
+        public UUID getUuid() { return uuid; }
+        public long getScore() { return score; }
+    }
+}
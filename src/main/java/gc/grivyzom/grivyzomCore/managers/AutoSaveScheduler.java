@@ -0,0 +1,210 @@
+package gc.grivyzom.grivyzomCore.managers;
+
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Guardado automático repartido a lo largo de auto_save_interval.
+ *
+ * Cada jugador pertenece a una ranura según su UUID y en cada tick solo se
+ * guardan los jugadores de una ranura, de modo que la carga de escritura se
+ * reparte en el intervalo en lugar de concentrarse en un único pico.
+ * Cada jugador sigue guardándose como mucho una vez por intervalo.
+ *
+ * Si hay diario ({@link PlayerJournal}), se rota al empezar cada ciclo y los
+ * segmentos anteriores se borran solo si el ciclo termina sin errores, sin
+ * jugadores omitidos (base de datos no disponible, plazo agotado o guardándose
+ * en otro hilo) y sin escrituras en la cola: en ese caso todos los jugadores que
+ * tenían cambios cuando empezó están ya en la base de datos.
+ */
+public class AutoSaveScheduler {
+
+    // Número máximo de ranuras en las que se divide el intervalo
+    private static final int MAX_SLOTS = 60;
+
+    private final WriteBehindFlusher writeBehindFlusher;
+    private final PlayerJournal journal;
+    private final Supplier<Collection<GrivyzomPlayer>> playerSource;
+    // true si hay escrituras en la cola esperando a la base de datos
+    private final BooleanSupplier queuedWrites;
+    private final Logger logger;
+    private final int intervalSeconds;
+    private final int slots;
+    private final long tickMillis;
+
+    private int currentSlot = 0;
+    private long cycleSegmentId = 0;
+
+    // Métricas (escritas solo por el hilo del planificador)
+    private volatile long cycles = 0;
+    private volatile long lastTickMs = 0;
+    private volatile long lastCycleMs = 0;
+    private volatile int lastCycleSaved = 0;
+    private volatile int lastCycleFailed = 0;
+    private volatile int backlog = 0;
+    private long cycleMs = 0;
+    private int cycleSaved = 0;
+    private int cycleFailed = 0;
+    private int cycleSkipped = 0;
+
+    public AutoSaveScheduler(WriteBehindFlusher writeBehindFlusher, PlayerJournal journal,
+                             Supplier<Collection<GrivyzomPlayer>> playerSource, BooleanSupplier queuedWrites,
+                             int intervalSeconds, Logger logger) {
+        this.writeBehindFlusher = writeBehindFlusher;
+        this.journal = journal;
+        this.playerSource = playerSource;
+        this.queuedWrites = queuedWrites;
+        this.logger = logger;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.slots = Math.min(this.intervalSeconds, MAX_SLOTS);
+        this.tickMillis = this.intervalSeconds * 1000L / slots;
+    }
+
+    /**
+     * Programa los ticks del guardado automático
+     */
+    public void start(ScheduledExecutorService scheduler) {
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                MessageUtils.sendErrorMessage(logger, "Error en el guardado automático: " + e.getMessage());
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        MessageUtils.sendInfoMessage(logger, String.format(
+                "💾 Guardado automático cada %d segundos repartido en %d ranuras", intervalSeconds, slots));
+    }
+
+    /**
+     * Guarda los jugadores con cambios de la ranura actual
+     */
+    private void tick() {
+        long start = System.nanoTime();
+
+        if (currentSlot == 0 && journal != null) {
+            cycleSegmentId = journal.rotate();
+        }
+
+        List<GrivyzomPlayer> slotPlayers = new ArrayList<>();
+        int dirtyPlayers = 0;
+        for (GrivyzomPlayer player : playerSource.get()) {
+            if (!player.isDirty()) {
+                continue;
+            }
+            dirtyPlayers++;
+            if (slotOf(player) == currentSlot) {
+                slotPlayers.add(player);
+            }
+        }
+
+        WriteBehindFlusher.FlushResult result = writeBehindFlusher.flushPlayers(slotPlayers);
+
+        lastTickMs = (System.nanoTime() - start) / 1_000_000;
+        backlog = dirtyPlayers - result.getSaved();
+        cycleMs += lastTickMs;
+        cycleSaved += result.getSaved();
+        cycleFailed += result.getFailed();
+        cycleSkipped += result.getSkipped();
+
+        if (result.getFailed() > 0) {
+            MessageUtils.sendWarningMessage(logger, String.format(
+                    "⚠ Guardado automático: %d jugadores no se pudieron guardar (ranura %d)",
+                    result.getFailed(), currentSlot));
+        }
+
+        currentSlot++;
+        if (currentSlot >= slots) {
+            finishCycle();
+        }
+    }
+
+    /**
+     * Cierra un ciclo completo del intervalo y publica sus métricas
+     */
+    private void finishCycle() {
+        currentSlot = 0;
+        if (journal != null && cycleFailed == 0 && cycleSkipped == 0 && !queuedWrites.getAsBoolean()) {
+            journal.checkpoint(cycleSegmentId);
+        }
+        cycles++;
+        lastCycleMs = cycleMs;
+        lastCycleSaved = cycleSaved;
+        lastCycleFailed = cycleFailed;
+
+        MessageUtils.sendDebugMessage(logger, String.format(
+                "Ciclo de guardado automático: %d guardados, %d errores, %d ms, %d pendientes",
+                cycleSaved, cycleFailed, cycleMs, backlog));
+
+        cycleMs = 0;
+        cycleSaved = 0;
+        cycleFailed = 0;
+        cycleSkipped = 0;
+    }
+
+    private int slotOf(GrivyzomPlayer player) {
+        return Math.floorMod(player.getUuid().hashCode(), slots);
+    }
+
+    /**
+     * Obtiene estadísticas del guardado automático
+     */
+    public AutoSaveStats getStats() {
+        return new AutoSaveStats(intervalSeconds, slots, cycles, lastTickMs,
+                lastCycleMs, lastCycleSaved, lastCycleFailed, backlog);
+    }
+
+    /**
+     * Clase para estadísticas del guardado automático
+     */
+    public static class AutoSaveStats {
+        private final int intervalSeconds;
+        private final int slots;
+        private final long cycles;
+        private final long lastTickMs;
+        private final long lastCycleMs;
+        private final int lastCycleSaved;
+        private final int lastCycleFailed;
+        private final int backlog;
+
+        public AutoSaveStats(int intervalSeconds, int slots, long cycles, long lastTickMs,
+                             long lastCycleMs, int lastCycleSaved, int lastCycleFailed, int backlog) {
+            this.intervalSeconds = intervalSeconds;
+            this.slots = slots;
+            this.cycles = cycles;
+            this.lastTickMs = lastTickMs;
+            this.lastCycleMs = lastCycleMs;
+            this.lastCycleSaved = lastCycleSaved;
+            this.lastCycleFailed = lastCycleFailed;
+            this.backlog = backlog;
+        }
+
+        public int getIntervalSeconds() { return intervalSeconds; }
+        public int getSlots() { return slots; }
+        public long getCycles() { return cycles; }
+        public long getLastTickMs() { return lastTickMs; }
+        public long getLastCycleMs() { return lastCycleMs; }
+        public int getLastCycleSaved() { return lastCycleSaved; }
+        public int getLastCycleFailed() { return lastCycleFailed; }
+        public int getBacklog() { return backlog; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "AutoSaveStats{interval=%ds, slots=%d, cycles=%d, lastTick=%dms, lastCycle=%dms, " +
+                            "lastCycleSaved=%d, lastCycleFailed=%d, backlog=%d}",
+                    intervalSeconds, slots, cycles, lastTickMs, lastCycleMs,
+                    lastCycleSaved, lastCycleFailed, backlog
+            );
+        }
+    }
+}
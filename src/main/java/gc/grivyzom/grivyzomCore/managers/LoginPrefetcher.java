@@ -0,0 +1,204 @@
+package gc.grivyzom.grivyzomCore.managers;
+
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carga anticipada de jugadores desde el pre-login.
+ *
+ * La carga se inicia en cuanto se conoce el UUID del jugador y queda una única
+ * carga en curso por UUID; el login y cualquier consulta posterior se unen a
+ * ella en lugar de repetir la consulta. Si no hubo pre-login, el login carga
+ * al jugador por su cuenta. Las cargas que nadie reclama (login
+ * rechazado) se descartan pasados unos segundos.
+ */
+public class LoginPrefetcher {
+
+    // Tiempo que se conserva una carga terminada a la espera del login
+    private static final long EXPIRE_SECONDS = 30;
+
+    /**
+     * Carga un jugador de la base de datos; devuelve null si no existe
+     */
+    @FunctionalInterface
+    public interface PlayerLoader {
+        GrivyzomPlayer load(UUID uuid) throws SQLException;
+    }
+
+    private final PlayerLoader loader;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<UUID, CompletableFuture<GrivyzomPlayer>> loads = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong ready = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong joinedLookups = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public LoginPrefetcher(PlayerLoader loader, Executor executor, ScheduledExecutorService scheduler) {
+        this.loader = loader;
+        this.executor = executor;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Inicia la carga de un jugador si no hay ya una en curso
+     */
+    public CompletableFuture<GrivyzomPlayer> prefetch(UUID uuid) {
+        CompletableFuture<GrivyzomPlayer> existing = loads.get(uuid);
+        if (existing != null) {
+            return existing;
+        }
+
+        // La carga se lanza fuera del mapa, no dentro de computeIfAbsent
+        CompletableFuture<GrivyzomPlayer> load = new CompletableFuture<>();
+        existing = loads.putIfAbsent(uuid, load);
+        if (existing != null) {
+            return existing;
+        }
+
+        startLoad(uuid, load);
+        return load;
+    }
+
+    /**
+     * Obtiene la carga iniciada en el pre-login para el login, o null si no la hay
+     */
+    public CompletableFuture<GrivyzomPlayer> claim(UUID uuid) {
+        CompletableFuture<GrivyzomPlayer> load = loads.get(uuid);
+        if (load == null) {
+            missed.incrementAndGet();
+        }
+        return load;
+    }
+
+    /**
+     * Devuelve la carga para continuar el login cuando termine, sin bloquear ningún
+     * hilo mientras tanto; cuenta si hubo que esperarla
+     */
+    public CompletableFuture<GrivyzomPlayer> whenLoaded(CompletableFuture<GrivyzomPlayer> load) {
+        if (load.isDone()) {
+            ready.incrementAndGet();
+            return load;
+        }
+
+        waited.incrementAndGet();
+        long start = System.nanoTime();
+        return load.whenComplete((player, error) -> totalWaitNanos.addAndGet(System.nanoTime() - start));
+    }
+
+    /**
+     * Obtiene la carga en curso o reciente de un jugador para unirse a ella, o null
+     */
+    public CompletableFuture<GrivyzomPlayer> find(UUID uuid) {
+        CompletableFuture<GrivyzomPlayer> load = loads.get(uuid);
+        if (load == null || load.isCompletedExceptionally()) {
+            return null;
+        }
+        joinedLookups.incrementAndGet();
+        return load;
+    }
+
+    /**
+     * Retira una carga ya usada por el login
+     */
+    public void release(UUID uuid, CompletableFuture<GrivyzomPlayer> load) {
+        loads.remove(uuid, load);
+    }
+
+    /**
+     * Descarta la carga de un jugador cuyos datos cambiaron en la base de datos
+     */
+    public void invalidate(UUID uuid) {
+        loads.remove(uuid);
+    }
+
+    private void startLoad(UUID uuid, CompletableFuture<GrivyzomPlayer> load) {
+        started.incrementAndGet();
+
+        load.whenComplete((player, error) -> {
+            try {
+                scheduler.schedule(() -> loads.remove(uuid, load), EXPIRE_SECONDS, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                loads.remove(uuid, load);
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                try {
+                    load.complete(loader.load(uuid));
+                } catch (SQLException | RuntimeException e) {
+                    load.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            load.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Obtiene estadísticas de la carga anticipada
+     */
+    public PrefetchStats getStats() {
+        return new PrefetchStats(loads.size(), started.get(), ready.get(), waited.get(), missed.get(),
+                joinedLookups.get(), totalWaitNanos.get());
+    }
+
+    /**
+     * Clase para estadísticas de la carga anticipada
+     */
+    public static class PrefetchStats {
+        private final int inFlight;
+        private final long started;
+        private final long ready;
+        private final long waited;
+        private final long missed;
+        private final long joinedLookups;
+        private final long totalWaitNanos;
+
+        public PrefetchStats(int inFlight, long started, long ready, long waited, long missed,
+                             long joinedLookups, long totalWaitNanos) {
+            this.inFlight = inFlight;
+            this.started = started;
+            this.ready = ready;
+            this.waited = waited;
+            this.missed = missed;
+            this.joinedLookups = joinedLookups;
+            this.totalWaitNanos = totalWaitNanos;
+        }
+
+        public int getInFlight() { return inFlight; }
+        public long getStarted() { return started; }
+        public long getReady() { return ready; }
+        public long getWaited() { return waited; }
+        public long getMissed() { return missed; }
+        public long getJoinedLookups() { return joinedLookups; }
+
+        public double getAverageWaitMs() {
+            long logins = ready + waited;
+            return logins == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / logins;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "PrefetchStats{inFlight=%d, started=%d, ready=%d, waited=%d, missed=%d, joinedLookups=%d, avgWaitMs=%.2f}",
+                    inFlight, started, ready, waited, missed, joinedLookups, getAverageWaitMs()
+            );
+        }
+    }
+}
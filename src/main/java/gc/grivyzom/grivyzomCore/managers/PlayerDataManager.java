@@ -3,30 +3,94 @@ package gc.grivyzom.grivyzomCore.managers;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
 import com.velocitypowered.api.proxy.Player;
+import gc.grivyzom.grivyzomCore.cache.OfflinePlayerCache;
+import gc.grivyzom.grivyzomCore.cache.UsernameIndex;
+import gc.grivyzom.grivyzomCore.config.ConfigManager;
+import gc.grivyzom.grivyzomCore.database.DatabaseExecutor;
 import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.leaderboard.LeaderboardEntry;
+import gc.grivyzom.grivyzomCore.leaderboard.LeaderboardManager;
+import gc.grivyzom.grivyzomCore.models.Coins;
 import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+import gc.grivyzom.grivyzomCore.models.PlayerChangeListener;
+import gc.grivyzom.grivyzomCore.models.PlayerField;
 import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import gc.grivyzom.grivyzomCore.utils.SingleFlight;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class PlayerDataManager {
 
     private final DatabaseManager databaseManager;
+    private final ConfigManager configManager;
     private final Logger logger;
 
     // Cache de jugadores en memoria
     private final Map<UUID, GrivyzomPlayer> playerCache = new ConcurrentHashMap<>();
 
+    // Cache de segundo nivel para jugadores offline (sección [cache] de config.toml)
+    private final OfflinePlayerCache offlineCache;
+
+    // Índice nombre -> UUID de jugadores online y nombres inexistentes recientes
+    private final UsernameIndex usernameIndex;
+
+    // Persistencia diferida de los cambios de jugadores
+    private final WriteBehindFlusher writeBehindFlusher;
+    private final AutoSaveScheduler autoSaveScheduler;
+    private final ServerSwitchTracker serverSwitchTracker;
+
+    // Diario local de cambios aún no guardados (null si está desactivado en config.toml)
+    private final PlayerJournal playerJournal;
+    private final ScheduledExecutorService scheduler;
+    // Ejecutor de las tareas que bloquean en la base de datos
+    private final DatabaseExecutor asyncExecutor;
+
+    // Consultas en curso por UUID y por nombre, compartidas entre peticiones concurrentes
+    private final SingleFlight<UUID, Optional<GrivyzomPlayer>> uuidLoads = new SingleFlight<>();
+    private final SingleFlight<String, Optional<GrivyzomPlayer>> usernameLoads = new SingleFlight<>();
+
+    // Cargas de jugadores iniciadas en el pre-login
+    private final LoginPrefetcher loginPrefetcher;
+
+    // Conexión vigente de cada jugador: una desconexión antigua no debe descargar al que volvió a entrar
+    private final Map<UUID, Player> sessions = new ConcurrentHashMap<>();
+
+    // Rankings en memoria (null si están desactivados en config.toml)
+    private final LeaderboardManager leaderboardManager;
+
+    // Recibe los cambios de los jugadores online
+    private final PlayerChangeListener changeListener = new PlayerChangeListener() {
+        @Override
+        public void onFieldChanged(GrivyzomPlayer player, PlayerField field) {
+            onPlayerChanged(player, field);
+        }
+
+        @Override
+        public void onUsernameChanged(GrivyzomPlayer player, String previousUsername) {
+            usernameIndex.add(previousUsername, player.getUsername(), player.getUuid());
+        }
+    };
+
     // Queries SQL
     private static final String SELECT_PLAYER = """
             SELECT uuid, username, display_name, first_join, last_join, last_server, 
@@ -34,32 +98,202 @@ public class PlayerDataManager {
             FROM grivyzom_players WHERE uuid = ?
             """;
 
-    private static final String INSERT_PLAYER = """
+    private static final String SELECT_PLAYER_BY_USERNAME = """
+            SELECT uuid, username, display_name, first_join, last_join, last_server, 
+                   total_playtime, coins, gems, rank_id, permissions, data, is_online 
+            FROM grivyzom_players WHERE username = ?
+            """;
+
+    private static final String SELECT_TOP_PLAYERS_BY_COINS = """
+            SELECT uuid, username, display_name, first_join, last_join, last_server, 
+                   total_playtime, coins, gems, rank_id, permissions, data, is_online 
+            FROM grivyzom_players ORDER BY coins DESC LIMIT ?
+            """;
+
+    // Registra el login: crea al jugador si es nuevo o actualiza nombre, última conexión y estado.
+    // display_name solo se fija al crear la fila; como antes, un jugador existente conserva el suyo.
+    // Los valores se repiten como parámetros en lugar de usar VALUES(), obsoleta desde MySQL 8.0.20.
+    private static final String UPSERT_PLAYER_LOGIN = """
             INSERT INTO grivyzom_players (uuid, username, display_name, first_join, last_join, is_online) 
-            VALUES (?, ?, ?, ?, ?, ?) 
+            VALUES (?, ?, ?, ?, ?, TRUE) 
             ON DUPLICATE KEY UPDATE 
-                username = VALUES(username), 
-                display_name = VALUES(display_name), 
-                last_join = VALUES(last_join), 
-                is_online = VALUES(is_online)
+                username = ?, 
+                last_join = ?, 
+                is_online = TRUE
             """;
 
     private static final String UPDATE_PLAYER_ONLINE_STATUS = """
             UPDATE grivyzom_players SET is_online = ?, last_join = ? WHERE uuid = ?
             """;
 
-    private static final String UPDATE_PLAYER_SERVER = """
-            UPDATE grivyzom_players SET last_server = ? WHERE uuid = ?
-            """;
-
-    private static final String UPDATE_PLAYER_DATA = """
-            UPDATE grivyzom_players SET coins = ?, gems = ?, rank_id = ?, 
-                   permissions = ?, data = ?, total_playtime = ? WHERE uuid = ?
+    private static final String RESET_ONLINE_STATUS = """
+            UPDATE grivyzom_players SET is_online = FALSE WHERE is_online = TRUE
             """;
 
-    public PlayerDataManager(DatabaseManager databaseManager, Logger logger) {
+    public PlayerDataManager(DatabaseManager databaseManager, ConfigManager configManager, Logger logger) {
         this.databaseManager = databaseManager;
+        this.configManager = configManager;
         this.logger = logger;
+        this.offlineCache = new OfflinePlayerCache(
+                configManager.isCacheEnabled(),
+                configManager.getCacheSize(),
+                configManager.getCacheExpireTime(),
+                databaseManager::isDegraded);
+        this.usernameIndex = new UsernameIndex(configManager.getNegativeCacheTime());
+        this.writeBehindFlusher = new WriteBehindFlusher(databaseManager, logger,
+                playerCache::values, configManager::getSaveBatchSize);
+        this.playerJournal = configManager.isJournalEnabled()
+                ? new PlayerJournal(configManager.getDataDirectory().resolve("journal"),
+                        configManager.isJournalFsync(), logger)
+                : null;
+        this.autoSaveScheduler = new AutoSaveScheduler(writeBehindFlusher, playerJournal, playerCache::values,
+                databaseManager::hasQueuedWrites,
+                configManager.getAutoSaveInterval() > 0 ? configManager.getAutoSaveInterval() : 300, logger);
+        this.serverSwitchTracker = new ServerSwitchTracker(databaseManager, logger, configManager::getSaveBatchSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.asyncExecutor = databaseManager.getAsyncExecutor();
+        this.loginPrefetcher = new LoginPrefetcher(this::loadPlayer, asyncExecutor, scheduler);
+        this.leaderboardManager = configManager.isLeaderboardEnabled()
+                ? new LeaderboardManager(databaseManager, playerCache::values, logger)
+                : null;
+    }
+
+    /**
+     * Recupera los cambios que quedaron en el diario tras una caída y lo abre.
+     * Debe llamarse antes de empezar a cargar jugadores.
+     */
+    public void openJournal() throws IOException, SQLException {
+        if (playerJournal != null) {
+            playerJournal.open(databaseManager, configManager.getSaveBatchSize());
+        }
+    }
+
+    /**
+     * Inicia el guardado automático de los cambios pendientes
+     */
+    public void start() {
+        autoSaveScheduler.start(scheduler);
+        serverSwitchTracker.start(scheduler, configManager.getServerFlushInterval());
+
+        if (offlineCache.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(offlineCache::purgeExpired, 60, 60, TimeUnit.SECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(usernameIndex::purgeExpired, 60, 60, TimeUnit.SECONDS);
+
+        if (leaderboardManager != null) {
+            leaderboardManager.start(configManager.getLeaderboardReconcileInterval());
+        }
+    }
+
+    /**
+     * Detiene el guardado periódico y guarda los cambios pendientes sin pasar de deadline
+     * (System.nanoTime(), el mismo plazo dado a {@link DatabaseManager#beginShutdown})
+     */
+    public void shutdown(long deadline) {
+        if (leaderboardManager != null) {
+            leaderboardManager.shutdown();
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // Guardar en lotes lo pendiente; cada sentencia está limitada al plazo restante
+        long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        WriteBehindFlusher.FlushResult result = writeBehindFlusher.flushAll(remainingMillis);
+        serverSwitchTracker.flush(deadline);
+        if (playerJournal != null) {
+            playerJournal.close(result.getFailed() == 0 && result.getSkipped() == 0
+                    && !databaseManager.hasQueuedWrites());
+        }
+
+        try {
+            int marked = updateOnlineStatusBulk(playerCache.keySet(), false);
+            if (marked > 0) {
+                MessageUtils.sendInfoMessage(logger, String.format("%d jugadores marcados como desconectados", marked));
+            }
+        } catch (SQLException e) {
+            MessageUtils.sendErrorMessage(logger, "Error al marcar jugadores como desconectados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Corrige is_online al iniciar: tras una caída del proxy los jugadores quedan marcados
+     * como conectados. Marca como conectados a los jugadores indicados y, solo si
+     * reset_online_on_startup está activo, antes a todos como desconectados: esa sentencia
+     * no distingue proxies, así que con varios proxies en la misma base de datos
+     * desconectaría también a los jugadores de los demás.
+     */
+    public void reconcileOnlineStatus(Collection<UUID> connectedPlayers) {
+        try {
+            if (configManager.isResetOnlineOnStartup()) {
+                int reset = databaseManager.executeUpdate(RESET_ONLINE_STATUS);
+                if (reset > 0) {
+                    MessageUtils.sendInfoMessage(logger, String.format(
+                            "%d jugadores seguían marcados como conectados y se han corregido", reset));
+                }
+            }
+            updateOnlineStatusBulk(connectedPlayers, true);
+        } catch (SQLException e) {
+            MessageUtils.sendErrorMessage(logger, "Error al corregir el estado online de los jugadores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cambia is_online de varios jugadores con una sentencia por lote de save_batch_size.
+     * Devuelve cuántos se enviaron a la base de datos (los que quedan en cola no cuentan).
+     */
+    private int updateOnlineStatusBulk(Collection<UUID> uuids, boolean online) throws SQLException {
+        List<UUID> remaining = new ArrayList<>(uuids);
+        int chunkSize = Math.max(1, configManager.getSaveBatchSize());
+        int updated = 0;
+
+        for (int from = 0; from < remaining.size(); from += chunkSize) {
+            List<UUID> chunk = remaining.subList(from, Math.min(remaining.size(), from + chunkSize));
+
+            StringBuilder sql = new StringBuilder("UPDATE grivyzom_players SET is_online = ? WHERE uuid IN (");
+            Object[] parameters = new Object[chunk.size() + 1];
+            parameters[0] = online;
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                parameters[i + 1] = chunk.get(i).toString();
+            }
+            sql.append(')');
+
+            if (databaseManager.executeUpdateOrQueue(sql.toString(), parameters)) {
+                updated += chunk.size();
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Cambio de saldo o tiempo de juego de un jugador online: se anota en el diario
+     * antes de volver a quien lo hizo y se actualizan los rankings
+     */
+    private void onPlayerChanged(GrivyzomPlayer player, PlayerField field) {
+        if (playerJournal != null) {
+            playerJournal.record(player);
+        }
+        if (leaderboardManager != null) {
+            leaderboardManager.onFieldChanged(player, field);
+        }
+    }
+
+    /**
+     * Empieza a cargar los datos del jugador antes de que termine el login
+     */
+    @Subscribe
+    public void onPlayerPreLogin(PreLoginEvent event) {
+        UUID uuid = event.getUniqueId();
+        if (uuid != null && !playerCache.containsKey(uuid)) {
+            loginPrefetcher.prefetch(uuid);
+        }
     }
 
     /**
@@ -68,25 +302,69 @@ public class PlayerDataManager {
     @Subscribe
     public void onPlayerLogin(LoginEvent event) {
         Player player = event.getPlayer();
+        sessions.put(player.getUniqueId(), player);
+        CompletableFuture<GrivyzomPlayer> load = loginPrefetcher.claim(player.getUniqueId());
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                GrivyzomPlayer grivyzomPlayer = loadOrCreatePlayer(player);
-                playerCache.put(player.getUniqueId(), grivyzomPlayer);
-
-                // Actualizar estado online
-                updatePlayerOnlineStatus(player.getUniqueId(), true);
-
-                MessageUtils.sendInfoMessage(logger,
-                        String.format("Jugador %s (%s) conectado y cargado",
-                                player.getUsername(), player.getUniqueId()));
+        // Datos ya en memoria (cache offline) o cargados desde el pre-login; la carga se
+        // encadena en vez de esperarla para no ocupar un hilo de la base de datos
+        GrivyzomPlayer cached = offlineCache.remove(player.getUniqueId());
+        CompletableFuture<GrivyzomPlayer> loaded = cached != null || load == null
+                ? CompletableFuture.completedFuture(cached)
+                : loginPrefetcher.whenLoaded(load);
 
-            } catch (Exception e) {
+        loaded.whenComplete((grivyzomPlayer, loadError) -> asyncExecutor.executeLifecycle(() -> {
+            try {
+                // Si la carga anticipada falló, la fila se lee al registrar el login
+                completeLogin(player, loadError == null ? grivyzomPlayer : null);
+            } catch (SQLException | RuntimeException e) {
                 MessageUtils.sendErrorMessage(logger,
                         String.format("Error al cargar datos del jugador %s: %s",
                                 player.getUsername(), e.getMessage()));
+            } finally {
+                if (load != null) {
+                    loginPrefetcher.release(player.getUniqueId(), load);
+                }
             }
-        });
+        }));
+    }
+
+    /**
+     * Termina el login con los datos ya cargados (o null para leerlos de la base de datos)
+     */
+    private void completeLogin(Player player, GrivyzomPlayer grivyzomPlayer) throws SQLException {
+        boolean alreadyLoaded = grivyzomPlayer != null;
+        if (alreadyLoaded) {
+            grivyzomPlayer.setOnline(true);
+            grivyzomPlayer.updateLastJoin();
+
+            // Pudo conectarse a un servidor antes de terminar la carga
+            String pendingServer = serverSwitchTracker.getPending(player.getUniqueId());
+            if (pendingServer != null) {
+                grivyzomPlayer.setLastServer(pendingServer);
+            }
+        } else {
+            // Registrar el login y leer la fila (una sola ida y vuelta con allow_multi_queries)
+            grivyzomPlayer = upsertAndLoadPlayer(player);
+        }
+
+        // El nombre pudo cambiar desde la última conexión
+        String previousUsername = grivyzomPlayer.getUsername();
+        grivyzomPlayer.setUsername(player.getUsername());
+        grivyzomPlayer.setChangeListener(changeListener);
+        playerCache.put(player.getUniqueId(), grivyzomPlayer);
+        usernameIndex.add(previousUsername, player.getUsername(), player.getUniqueId());
+        if (leaderboardManager != null) {
+            leaderboardManager.track(grivyzomPlayer);
+        }
+
+        // Actualizar estado online (la carga desde la base de datos ya lo hizo)
+        if (alreadyLoaded) {
+            upsertPlayerLogin(player);
+        }
+
+        MessageUtils.sendInfoMessage(logger,
+                String.format("Jugador %s (%s) conectado y cargado",
+                        player.getUsername(), player.getUniqueId()));
     }
 
     /**
@@ -95,20 +373,43 @@ public class PlayerDataManager {
     @Subscribe
     public void onPlayerDisconnect(DisconnectEvent event) {
         Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        sessions.remove(uuid, player);
 
-        CompletableFuture.runAsync(() -> {
+        // Guardar al jugador no puede descartarse: con la cola llena o al cerrar se hace en este hilo
+        asyncExecutor.executeLifecycle(() -> {
             try {
                 // Guardar datos antes de desconectar
-                GrivyzomPlayer grivyzomPlayer = playerCache.get(player.getUniqueId());
+                GrivyzomPlayer grivyzomPlayer = playerCache.get(uuid);
                 if (grivyzomPlayer != null) {
                     savePlayerData(grivyzomPlayer);
+                    // Si quedó en la cola de escrituras el diario debe conservarlo
+                    if (playerJournal != null && !databaseManager.isDegraded()) {
+                        playerJournal.markSaved(uuid);
+                    }
                 }
 
-                // Actualizar estado offline
-                updatePlayerOnlineStatus(player.getUniqueId(), false);
+                // Pasar del cache online al cache offline, salvo que ya haya vuelto a entrar:
+                // la sesión nueva comparte este mismo objeto
+                boolean removed = grivyzomPlayer == null
+                        ? !sessions.containsKey(uuid)
+                        : playerCache.computeIfPresent(uuid, (key, current) ->
+                                current == grivyzomPlayer && !sessions.containsKey(key) ? null : current) == null;
+                if (!removed) {
+                    MessageUtils.sendInfoMessage(logger, String.format(
+                            "Jugador %s guardado; ya había vuelto a conectarse", player.getUsername()));
+                    return;
+                }
 
-                // Remover del cache
-                playerCache.remove(player.getUniqueId());
+                usernameIndex.remove(player.getUsername(), uuid);
+                if (grivyzomPlayer != null) {
+                    grivyzomPlayer.setChangeListener(null);
+                    grivyzomPlayer.setOnline(false);
+                    offlineCache.put(grivyzomPlayer);
+                }
+
+                // Actualizar estado offline
+                updatePlayerOnlineStatus(uuid, false);
 
                 MessageUtils.sendInfoMessage(logger,
                         String.format("Jugador %s desconectado y guardado", player.getUsername()));
@@ -129,196 +430,226 @@ public class PlayerDataManager {
         Player player = event.getPlayer();
         String serverName = event.getServer().getServerInfo().getName();
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                updatePlayerServer(player.getUniqueId(), serverName);
+        // El valor en memoria es el vigente; la base de datos se actualiza en lotes
+        GrivyzomPlayer grivyzomPlayer = playerCache.get(player.getUniqueId());
+        if (grivyzomPlayer != null) {
+            grivyzomPlayer.setLastServer(serverName);
+        }
+        serverSwitchTracker.record(player.getUniqueId(), serverName);
+    }
 
-                GrivyzomPlayer grivyzomPlayer = playerCache.get(player.getUniqueId());
-                if (grivyzomPlayer != null) {
-                    grivyzomPlayer.setLastServer(serverName);
-                }
+    /**
+     * Carga un jugador desde la cache offline o la base de datos; devuelve null si no existe
+     */
+    private GrivyzomPlayer loadPlayer(UUID uuid) throws SQLException {
+        // Reconexión rápida: la desconexión anterior puede no haberse procesado aún
+        GrivyzomPlayer cached = playerCache.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
 
-            } catch (Exception e) {
-                MessageUtils.sendErrorMessage(logger,
-                        String.format("Error al actualizar servidor del jugador %s: %s",
-                                player.getUsername(), e.getMessage()));
-            }
-        });
+        cached = offlineCache.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        return databaseManager.queryOne(SELECT_PLAYER, this::playerFromRow, uuid.toString()).orElse(null);
     }
 
     /**
-     * Carga o crea un jugador desde la base de datos
+     * Crea un jugador desde una fila, aplicando el servidor pendiente de guardar si lo hay
      */
-    private GrivyzomPlayer loadOrCreatePlayer(Player player) throws SQLException {
-        try (ResultSet rs = databaseManager.executeQuery(SELECT_PLAYER, player.getUniqueId().toString())) {
-
-            if (rs.next()) {
-                // Jugador existe, cargar datos
-                return GrivyzomPlayer.fromResultSet(rs);
-            } else {
-                // Jugador nuevo, crear entrada
-                Timestamp now = new Timestamp(System.currentTimeMillis());
-
-                databaseManager.executeUpdate(INSERT_PLAYER,
-                        player.getUniqueId().toString(),
-                        player.getUsername(),
-                        player.getUsername(), // display_name por defecto
-                        now, // first_join
-                        now, // last_join
-                        true  // is_online
-                );
+    private GrivyzomPlayer playerFromRow(ResultSet rs) throws SQLException {
+        GrivyzomPlayer player = GrivyzomPlayer.fromResultSet(rs);
+        String pendingServer = serverSwitchTracker.getPending(player.getUuid());
+        if (pendingServer != null) {
+            player.setLastServer(pendingServer);
+        }
+        return player;
+    }
 
-                // Crear objeto GrivyzomPlayer
-                GrivyzomPlayer newPlayer = new GrivyzomPlayer(
-                        player.getUniqueId(),
-                        player.getUsername(),
-                        player.getUsername(),
-                        now,
-                        now,
-                        null, // last_server
-                        0L,   // total_playtime
-                        0.0,  // coins
-                        0,    // gems
-                        "default", // rank_id
-                        null, // permissions
-                        null, // data
-                        true  // is_online
-                );
+    /**
+     * Registra el login (creando al jugador si es nuevo) y lee su fila completa
+     */
+    private GrivyzomPlayer upsertAndLoadPlayer(Player player) throws SQLException {
+        Object[] upsertParameters = loginParameters(player);
 
-                MessageUtils.sendInfoMessage(logger,
-                        String.format("Nuevo jugador registrado: %s", player.getUsername()));
+        GrivyzomPlayer grivyzomPlayer = databaseManager.updateAndQueryOne(UPSERT_PLAYER_LOGIN, upsertParameters,
+                        SELECT_PLAYER, this::playerFromRow, player.getUniqueId().toString())
+                .orElseThrow(() -> new SQLException(
+                        "No se encontró la fila del jugador tras registrarlo: " + player.getUniqueId()));
 
-                return newPlayer;
-            }
+        // Una fila recién creada tiene la misma primera y última conexión
+        if (grivyzomPlayer.getFirstJoin() != null
+                && grivyzomPlayer.getFirstJoin().equals(grivyzomPlayer.getLastJoin())) {
+            MessageUtils.sendInfoMessage(logger,
+                    String.format("Nuevo jugador registrado: %s", player.getUsername()));
         }
+        return grivyzomPlayer;
     }
 
     /**
-     * Actualiza el estado online del jugador
+     * Registra el login de un jugador ya cargado en memoria
      */
-    private void updatePlayerOnlineStatus(UUID uuid, boolean online) throws SQLException {
+    private void upsertPlayerLogin(Player player) throws SQLException {
+        databaseManager.executeUpdateOrQueue(UPSERT_PLAYER_LOGIN, loginParameters(player));
+    }
+
+    private static Object[] loginParameters(Player player) {
         Timestamp now = new Timestamp(System.currentTimeMillis());
-        databaseManager.executeUpdate(UPDATE_PLAYER_ONLINE_STATUS, online, now, uuid.toString());
+        return new Object[]{
+                player.getUniqueId().toString(),
+                player.getUsername(),
+                player.getUsername(), // display_name por defecto
+                now, // first_join
+                now, // last_join
+                player.getUsername(), // username si ya existía
+                now  // last_join si ya existía
+        };
     }
 
     /**
-     * Actualiza el servidor del jugador
+     * Actualiza el estado online del jugador
      */
-    private void updatePlayerServer(UUID uuid, String serverName) throws SQLException {
-        databaseManager.executeUpdate(UPDATE_PLAYER_SERVER, serverName, uuid.toString());
+    private void updatePlayerOnlineStatus(UUID uuid, boolean online) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        databaseManager.executeUpdateOrQueue(UPDATE_PLAYER_ONLINE_STATUS, online, now, uuid.toString());
     }
 
     /**
-     * Guarda los datos del jugador en la base de datos
+     * Guarda los campos modificados del jugador en la base de datos
      */
     public void savePlayerData(GrivyzomPlayer player) throws SQLException {
-        databaseManager.executeUpdate(UPDATE_PLAYER_DATA,
-                player.getCoins(),
-                player.getGems(),
-                player.getRankId(),
-                player.getPermissions(),
-                player.getData(),
-                player.getTotalPlaytime(),
-                player.getUuid().toString()
-        );
+        writeBehindFlusher.flush(player);
     }
 
     /**
      * Guarda todos los datos de jugadores online
      */
     public CompletableFuture<Void> saveAllOnlinePlayers() {
-        return CompletableFuture.runAsync(() -> {
-            int saved = 0;
-            int errors = 0;
-
-            for (GrivyzomPlayer player : playerCache.values()) {
-                try {
-                    savePlayerData(player);
-                    saved++;
-                } catch (SQLException e) {
-                    errors++;
-                    MessageUtils.sendErrorMessage(logger,
-                            String.format("Error al guardar jugador %s: %s",
-                                    player.getUsername(), e.getMessage()));
-                }
-            }
-
-            MessageUtils.sendInfoMessage(logger,
-                    String.format("Guardado automático completado: %d guardados, %d errores", saved, errors));
-        });
+        return asyncExecutor.runAsync(writeBehindFlusher::flushAll);
     }
 
     /**
      * Obtiene un jugador del cache o de la base de datos
      */
     public CompletableFuture<Optional<GrivyzomPlayer>> getPlayer(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            // Primero buscar en cache
-            GrivyzomPlayer cached = playerCache.get(uuid);
-            if (cached != null) {
-                return Optional.of(cached);
+        // Jugador entrando: unirse a la carga iniciada en el pre-login
+        if (!playerCache.containsKey(uuid)) {
+            CompletableFuture<GrivyzomPlayer> pending = loginPrefetcher.find(uuid);
+            if (pending != null) {
+                return pending.handle((player, error) -> Optional.ofNullable(error == null ? player : null));
             }
+        }
 
-            // Si no está en cache, buscar en base de datos
-            try (ResultSet rs = databaseManager.executeQuery(SELECT_PLAYER, uuid.toString())) {
-                if (rs.next()) {
-                    GrivyzomPlayer player = GrivyzomPlayer.fromResultSet(rs);
-                    return Optional.of(player);
-                }
+        // Primero buscar en cache
+        GrivyzomPlayer cached = playerCache.get(uuid);
+        if (cached == null) {
+            cached = offlineCache.get(uuid);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        // Si no está en cache, buscar en base de datos (una sola consulta por UUID a la vez)
+        return uuidLoads.execute(uuid, () -> {
+            try {
+                Optional<GrivyzomPlayer> player = databaseManager.queryOne(SELECT_PLAYER, this::playerFromRow,
+                        uuid.toString());
+                player.ifPresent(offlineCache::put);
+                return player;
             } catch (SQLException e) {
                 MessageUtils.sendErrorMessage(logger,
                         String.format("Error al obtener jugador %s: %s", uuid, e.getMessage()));
             }
 
             return Optional.empty();
-        });
+        }, asyncExecutor);
     }
 
     /**
      * Obtiene un jugador por nombre de usuario
      */
     public CompletableFuture<Optional<GrivyzomPlayer>> getPlayerByUsername(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            // Buscar en cache primero
-            for (GrivyzomPlayer player : playerCache.values()) {
-                if (player.getUsername().equalsIgnoreCase(username)) {
-                    return Optional.of(player);
-                }
-            }
+        // Jugadores online y nombres inexistentes se resuelven sin salir del hilo actual
+        GrivyzomPlayer online = findOnlineByUsername(username);
+        if (online != null) {
+            return CompletableFuture.completedFuture(Optional.of(online));
+        }
+        if (usernameIndex.isKnownMissing(username)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
 
-            // Buscar en base de datos
-            try (ResultSet rs = databaseManager.executeQuery(
-                    SELECT_PLAYER.replace("WHERE uuid = ?", "WHERE username = ?"),
-                    username)) {
+        GrivyzomPlayer cached = offlineCache.getByUsername(username);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
 
-                if (rs.next()) {
-                    GrivyzomPlayer player = GrivyzomPlayer.fromResultSet(rs);
-                    return Optional.of(player);
+        // Buscar en base de datos (una sola consulta por nombre a la vez)
+        return usernameLoads.execute(username.toLowerCase(Locale.ROOT), () -> {
+            try {
+                Optional<GrivyzomPlayer> player = databaseManager.queryOne(SELECT_PLAYER_BY_USERNAME,
+                        this::playerFromRow, username);
+                if (player.isPresent()) {
+                    offlineCache.put(player.get());
+                } else {
+                    usernameIndex.markMissing(username);
                 }
+                return player;
             } catch (SQLException e) {
                 MessageUtils.sendErrorMessage(logger,
                         String.format("Error al obtener jugador por nombre %s: %s", username, e.getMessage()));
             }
 
             return Optional.empty();
-        });
+        }, asyncExecutor);
     }
 
     /**
-     * Actualiza las monedas de un jugador
+     * Busca un jugador online por nombre usando el índice de nombres
      */
-    public CompletableFuture<Boolean> updatePlayerCoins(UUID uuid, double coins) {
-        return CompletableFuture.supplyAsync(() -> {
+    private GrivyzomPlayer findOnlineByUsername(String username) {
+        UUID uuid = usernameIndex.find(username);
+        if (uuid == null) {
+            return null;
+        }
+
+        GrivyzomPlayer player = playerCache.get(uuid);
+        if (player == null || !player.getUsername().equalsIgnoreCase(username)) {
+            // Entrada desactualizada (jugador desconectado o renombrado)
+            usernameIndex.remove(username, uuid);
+            return null;
+        }
+        return player;
+    }
+
+    /**
+     * Actualiza las monedas (en unidades mínimas) de un jugador
+     */
+    public CompletableFuture<Boolean> updatePlayerCoinsMinor(UUID uuid, long coins) {
+        // Jugador online: el cambio se guarda con el resto de cambios pendientes
+        GrivyzomPlayer cached = playerCache.get(uuid);
+        if (cached != null) {
+            cached.setCoinsMinor(coins);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return asyncExecutor.supplyAsync(() -> {
             try {
-                databaseManager.executeUpdate(
+                boolean written = databaseManager.executeUpdateOrQueue(
                         "UPDATE grivyzom_players SET coins = ? WHERE uuid = ?",
-                        coins, uuid.toString()
+                        Coins.toDecimal(coins), uuid.toString()
                 );
-
-                // Actualizar cache si está presente
-                GrivyzomPlayer cached = playerCache.get(uuid);
-                if (cached != null) {
-                    cached.setCoins(coins);
+                // En cola: la copia en cache sigue sirviendo las lecturas con el valor nuevo
+                GrivyzomPlayer offline = written ? null : offlineCache.get(uuid);
+                if (offline != null) {
+                    offline.setCoinsMinor(coins);
+                } else {
+                    offlineCache.invalidate(uuid);
+                }
+                loginPrefetcher.invalidate(uuid);
+                if (leaderboardManager != null) {
+                    leaderboardManager.update(uuid, PlayerField.COINS, coins);
                 }
 
                 return true;
@@ -330,21 +661,41 @@ public class PlayerDataManager {
         });
     }
 
+    /**
+     * Actualiza las monedas de un jugador
+     * @deprecated usar {@link #updatePlayerCoinsMinor(UUID, long)}
+     */
+    @Deprecated
+    public CompletableFuture<Boolean> updatePlayerCoins(UUID uuid, double coins) {
+        return updatePlayerCoinsMinor(uuid, Coins.fromDouble(coins));
+    }
+
     /**
      * Actualiza las gemas de un jugador
      */
     public CompletableFuture<Boolean> updatePlayerGems(UUID uuid, int gems) {
-        return CompletableFuture.supplyAsync(() -> {
+        // Jugador online: el cambio se guarda con el resto de cambios pendientes
+        GrivyzomPlayer cached = playerCache.get(uuid);
+        if (cached != null) {
+            cached.setGems(gems);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return asyncExecutor.supplyAsync(() -> {
             try {
-                databaseManager.executeUpdate(
+                boolean written = databaseManager.executeUpdateOrQueue(
                         "UPDATE grivyzom_players SET gems = ? WHERE uuid = ?",
                         gems, uuid.toString()
                 );
-
-                // Actualizar cache si está presente
-                GrivyzomPlayer cached = playerCache.get(uuid);
-                if (cached != null) {
-                    cached.setGems(gems);
+                GrivyzomPlayer offline = written ? null : offlineCache.get(uuid);
+                if (offline != null) {
+                    offline.setGems(gems);
+                } else {
+                    offlineCache.invalidate(uuid);
+                }
+                loginPrefetcher.invalidate(uuid);
+                if (leaderboardManager != null) {
+                    leaderboardManager.update(uuid, PlayerField.GEMS, gems);
                 }
 
                 return true;
@@ -357,35 +708,49 @@ public class PlayerDataManager {
     }
 
     /**
-     * Obtiene el top de jugadores por monedas
+     * Obtiene el top de jugadores por monedas con sus datos completos desde la base de datos.
+     * Para mostrar rankings es preferible {@link #getLeaderboard(PlayerField, int)}, que no consulta la base de datos.
      */
-    public CompletableFuture<java.util.List<GrivyzomPlayer>> getTopPlayersByCoins(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
-            java.util.List<GrivyzomPlayer> topPlayers = new java.util.ArrayList<>();
-
-            try (ResultSet rs = databaseManager.executeQuery(
-                    SELECT_PLAYER.replace("WHERE uuid = ?", "") +
-                            " ORDER BY coins DESC LIMIT ?", limit)) {
-
-                while (rs.next()) {
-                    topPlayers.add(GrivyzomPlayer.fromResultSet(rs));
-                }
+    public CompletableFuture<List<GrivyzomPlayer>> getTopPlayersByCoins(int limit) {
+        return asyncExecutor.supplyAsync(() -> {
+            try {
+                return databaseManager.query(SELECT_TOP_PLAYERS_BY_COINS, this::playerFromRow, limit);
             } catch (SQLException e) {
                 MessageUtils.sendErrorMessage(logger,
                         "Error al obtener top de jugadores por monedas: " + e.getMessage());
+                return new ArrayList<>();
             }
-
-            return topPlayers;
         });
     }
 
+    /**
+     * Obtiene los primeros puestos del ranking de monedas, gemas o tiempo de juego.
+     * Devuelve una lista vacía si los rankings están desactivados.
+     */
+    public List<LeaderboardEntry> getLeaderboard(PlayerField field, int limit) {
+        if (leaderboardManager == null) {
+            return Collections.emptyList();
+        }
+        return leaderboardManager.getTop(field, limit);
+    }
+
+    /**
+     * Obtiene la posición (desde 1) de un jugador en un ranking, o 0 si no aparece
+     */
+    public int getLeaderboardRank(PlayerField field, UUID uuid) {
+        if (leaderboardManager == null) {
+            return 0;
+        }
+        return leaderboardManager.getRank(field, uuid);
+    }
+
     /**
      * Obtiene estadísticas de jugadores
      */
     public PlayerStats getPlayerStats() {
         return new PlayerStats(
                 playerCache.size(),
-                playerCache.values().stream().mapToDouble(GrivyzomPlayer::getCoins).sum(),
+                playerCache.values().stream().mapToLong(GrivyzomPlayer::getCoinsMinor).sum(),
                 playerCache.values().stream().mapToInt(GrivyzomPlayer::getGems).sum()
         );
     }
@@ -395,29 +760,74 @@ public class PlayerDataManager {
         return new ConcurrentHashMap<>(playerCache);
     }
 
+    public WriteBehindFlusher.FlushStats getFlushStats() {
+        return writeBehindFlusher.getStats();
+    }
+
+    public AutoSaveScheduler.AutoSaveStats getAutoSaveStats() {
+        return autoSaveScheduler.getStats();
+    }
+
+    public OfflinePlayerCache.CacheStats getOfflineCacheStats() {
+        return offlineCache.getStats();
+    }
+
+    public UsernameIndex.IndexStats getUsernameIndexStats() {
+        return usernameIndex.getStats();
+    }
+
+    /**
+     * Número de consultas de jugadores ahorradas al unirse a una ya en curso
+     */
+    public long getDeduplicatedLoads() {
+        return uuidLoads.getDeduplicated() + usernameLoads.getDeduplicated();
+    }
+
+    public ServerSwitchTracker.SwitchStats getServerSwitchStats() {
+        return serverSwitchTracker.getStats();
+    }
+
+    public LoginPrefetcher.PrefetchStats getPrefetchStats() {
+        return loginPrefetcher.getStats();
+    }
+
+    public PlayerJournal.JournalStats getJournalStats() {
+        return playerJournal != null ? playerJournal.getStats() : null;
+    }
+
+    public LeaderboardManager getLeaderboardManager() {
+        return leaderboardManager;
+    }
+
     /**
      * Clase para estadísticas de jugadores
      */
     public static class PlayerStats {
         private final int onlinePlayers;
-        private final double totalCoins;
+        private final long totalCoinsMinor;
         private final int totalGems;
 
-        public PlayerStats(int onlinePlayers, double totalCoins, int totalGems) {
+        public PlayerStats(int onlinePlayers, long totalCoinsMinor, int totalGems) {
             this.onlinePlayers = onlinePlayers;
-            this.totalCoins = totalCoins;
+            this.totalCoinsMinor = totalCoinsMinor;
             this.totalGems = totalGems;
         }
 
         public int getOnlinePlayers() { return onlinePlayers; }
-        public double getTotalCoins() { return totalCoins; }
+        public long getTotalCoinsMinor() { return totalCoinsMinor; }
+
+        /**
+         * @deprecated usar {@link #getTotalCoinsMinor()}
+         */
+        @Deprecated
+        public double getTotalCoins() { return Coins.toDouble(totalCoinsMinor); }
         public int getTotalGems() { return totalGems; }
 
         @Override
         public String toString() {
             return String.format(
-                    "PlayerStats{onlinePlayers=%d, totalCoins=%.2f, totalGems=%d}",
-                    onlinePlayers, totalCoins, totalGems
+                    "PlayerStats{onlinePlayers=%d, totalCoins=%s, totalGems=%d}",
+                    onlinePlayers, Coins.format(totalCoinsMinor), totalGems
             );
         }
     }
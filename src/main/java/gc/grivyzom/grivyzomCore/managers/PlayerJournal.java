@@ -0,0 +1,467 @@
+package gc.grivyzom.grivyzomCore.managers;
+
+import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.models.Coins;
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Diario local (write-ahead) de los saldos y el tiempo de juego de los jugadores online.
+ *
+ * Cada cambio de monedas, gemas o tiempo de juego se anota en disco con los
+ * valores absolutos del jugador antes de volver a quien lo hizo, de modo que si
+ * el proxy se cae entre dos guardados automáticos los valores se recuperan al
+ * iniciar. El diario se divide en segmentos: se abre uno nuevo al comenzar cada
+ * ciclo del guardado automático y los anteriores se borran cuando el ciclo
+ * termina sin errores, porque para entonces todos sus cambios ya están guardados.
+ *
+ * Los registros se acumulan en un buffer y se escriben por grupos: el primer hilo
+ * que necesita su registro en disco escribe (y sincroniza, con fsync) de una vez
+ * todo lo acumulado, mientras los demás siguen anotando en un segundo buffer o
+ * esperan a esa misma escritura.
+ */
+public class PlayerJournal {
+
+    private static final byte TYPE_SNAPSHOT = 1;
+    private static final byte TYPE_SAVED = 2;
+
+    // tipo + UUID + monedas + gemas + tiempo de juego + CRC32
+    private static final int RECORD_SIZE = 1 + 16 + 8 + 4 + 8 + 4;
+
+    // Registros que caben en cada uno de los dos buffers
+    private static final int BUFFER_RECORDS = 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String UPDATE_PLAYER_BALANCES = """
+            UPDATE grivyzom_players SET coins = ?, gems = ?, total_playtime = ? WHERE uuid = ?
+            """;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Logger logger;
+    private final CRC32 crc = new CRC32();
+
+    // Protege el segmento y los buffers; se suelta mientras se escribe un grupo
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    // Registros que esperan a escribirse y el buffer del grupo que se está escribiendo
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+    private ByteBuffer writing = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+    private long appendedSequence = 0;
+    private long writtenSequence = 0;
+    private boolean flushing = false;
+
+    private FileChannel channel;
+    private long segmentId;
+
+    // Primer segmento abierto en esta ejecución
+    private long firstSegmentId = Long.MAX_VALUE;
+
+    // Métricas
+    private volatile long records = 0;
+    private volatile long commits = 0;
+    private volatile long rotations = 0;
+    private volatile long deletedSegments = 0;
+    private volatile long writeErrors = 0;
+    private volatile int replayedPlayers = 0;
+
+    public PlayerJournal(Path directory, boolean fsync, Logger logger) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.logger = logger;
+    }
+
+    /**
+     * Guarda en la base de datos los valores que quedaron en el diario tras una caída
+     * y abre un segmento nuevo. Si la base de datos falla se lanza la excepción sin
+     * tocar los segmentos: no se deben cargar jugadores hasta haberlos recuperado.
+     */
+    public void open(DatabaseManager databaseManager, int batchSize) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = listSegments();
+
+        if (!segments.isEmpty()) {
+            Map<UUID, long[]> pending = readSegments(segments.values());
+            replay(databaseManager, pending, batchSize);
+            for (Path segment : segments.values()) {
+                Files.deleteIfExists(segment);
+            }
+            if (!pending.isEmpty()) {
+                MessageUtils.sendSuccessMessage(logger, String.format(
+                        "📒 Diario recuperado: %d jugadores restaurados tras un cierre inesperado", pending.size()));
+            }
+        }
+
+        lock.lock();
+        try {
+            segmentId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            firstSegmentId = segmentId;
+            channel = openSegment(segmentId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Anota los valores actuales de un jugador y vuelve cuando el registro está en disco.
+     * Se leen dentro del bloqueo, así el último registro de cada jugador siempre tiene
+     * sus valores más recientes.
+     */
+    public void record(GrivyzomPlayer player) {
+        lock.lock();
+        try {
+            commit(append(TYPE_SNAPSHOT, player.getUuid(), player.getCoinsMinor(), player.getGems(),
+                    player.getTotalPlaytime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Anota que un jugador se guardó por completo (p.ej. al desconectarse), para no
+     * reproducir sus valores anteriores si después se modifican fuera del proxy
+     */
+    public void markSaved(UUID uuid) {
+        lock.lock();
+        try {
+            commit(append(TYPE_SAVED, uuid, 0L, 0, 0L));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra el segmento actual y abre uno nuevo; devuelve el identificador del nuevo
+     */
+    public long rotate() {
+        lock.lock();
+        try {
+            if (channel == null) {
+                return segmentId;
+            }
+            // Lo anotado hasta ahora pertenece al segmento que se cierra
+            drain();
+            try {
+                channel.force(false);
+                channel.close();
+                segmentId++;
+                channel = openSegment(segmentId);
+                rotations++;
+            } catch (IOException e) {
+                channel = null;
+                writeErrors++;
+                MessageUtils.sendErrorMessage(logger, "Error al rotar el diario de jugadores, queda desactivado: " + e.getMessage());
+            }
+            return segmentId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Borra los segmentos de esta ejecución anteriores a keepFromSegmentId
+     */
+    public void checkpoint(long keepFromSegmentId) {
+        lock.lock();
+        try {
+            for (Map.Entry<Long, Path> segment : listSegments().entrySet()) {
+                long id = segment.getKey();
+                if (id >= firstSegmentId && id < keepFromSegmentId && id != segmentId) {
+                    Files.deleteIfExists(segment.getValue());
+                    deletedSegments++;
+                }
+            }
+        } catch (IOException e) {
+            MessageUtils.sendErrorMessage(logger, "Error al limpiar el diario de jugadores: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra el diario; si todo quedó guardado (clean) borra los segmentos de esta ejecución
+     */
+    public void close(boolean clean) {
+        lock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            drain();
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                writeErrors++;
+            }
+            channel = null;
+
+            if (clean) {
+                checkpoint(Long.MAX_VALUE);
+                try {
+                    Files.deleteIfExists(segmentPath(segmentId));
+                } catch (IOException e) {
+                    MessageUtils.sendErrorMessage(logger, "Error al limpiar el diario de jugadores: " + e.getMessage());
+                }
+            } else {
+                MessageUtils.sendWarningMessage(logger,
+                        "⚠ Quedan cambios de jugadores sin guardar en el diario, se recuperarán al iniciar");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Añade un registro al buffer (con el bloqueo tomado); devuelve su número de
+     * secuencia, o 0 si el diario no está abierto
+     */
+    private long append(byte type, UUID uuid, long coinsMinor, int gems, long totalPlaytime) {
+        if (channel == null) {
+            return 0;
+        }
+        // Buffer lleno: escribir lo acumulado antes de seguir
+        while (pending.remaining() < RECORD_SIZE) {
+            commit(appendedSequence);
+        }
+
+        int start = pending.position();
+        pending.put(type)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .putLong(coinsMinor)
+                .putInt(gems)
+                .putLong(totalPlaytime);
+        crc.reset();
+        crc.update(pending.array(), start, RECORD_SIZE - 4);
+        pending.putInt((int) crc.getValue());
+        return ++appendedSequence;
+    }
+
+    /**
+     * Espera (con el bloqueo tomado) a que el registro sequence esté escrito. Si no hay
+     * ninguna escritura en curso, este hilo escribe de una vez todo lo acumulado; si la
+     * hay, espera a que termine y vuelve a comprobar.
+     */
+    private void commit(long sequence) {
+        while (writtenSequence < sequence) {
+            if (flushing) {
+                written.awaitUninterruptibly();
+                continue;
+            }
+
+            flushing = true;
+            ByteBuffer batch = pending;
+            pending = writing;
+            writing = batch;
+            long upTo = appendedSequence;
+            long count = upTo - writtenSequence;
+            FileChannel target = channel;
+
+            // La escritura se hace sin el bloqueo para que los demás sigan anotando en el otro buffer
+            lock.unlock();
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                if (fsync) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                lock.lock();
+            }
+
+            batch.clear();
+            writtenSequence = upTo;
+            flushing = false;
+            if (error == null) {
+                records += count;
+                commits++;
+            } else if (writeErrors++ == 0) {
+                // Los cambios siguen en memoria y se guardarán con el guardado automático
+                MessageUtils.sendErrorMessage(logger, "Error al escribir en el diario de jugadores: " + error.getMessage());
+            }
+            written.signalAll();
+        }
+    }
+
+    /**
+     * Escribe todo lo acumulado y espera a que no quede ninguna escritura en curso (con el bloqueo tomado)
+     */
+    private void drain() {
+        while (flushing || pending.position() > 0) {
+            if (flushing) {
+                written.awaitUninterruptibly();
+            } else {
+                commit(appendedSequence);
+            }
+        }
+    }
+
+    /**
+     * Lee los segmentos en orden y devuelve los últimos valores de cada jugador sin guardar.
+     * Un registro incompleto o corrupto (caída a mitad de escritura) termina su segmento.
+     */
+    private Map<UUID, long[]> readSegments(Iterable<Path> segments) throws IOException {
+        Map<UUID, long[]> pending = new LinkedHashMap<>();
+        CRC32 checksum = new CRC32();
+
+        for (Path segment : segments) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (data.remaining() >= RECORD_SIZE) {
+                int start = data.position();
+                checksum.reset();
+                checksum.update(data.array(), start, RECORD_SIZE - 4);
+
+                byte type = data.get();
+                UUID uuid = new UUID(data.getLong(), data.getLong());
+                long coinsMinor = data.getLong();
+                int gems = data.getInt();
+                long totalPlaytime = data.getLong();
+                if (data.getInt() != (int) checksum.getValue()) {
+                    MessageUtils.sendWarningMessage(logger, "⚠ Registro incompleto al final de " + segment.getFileName());
+                    break;
+                }
+
+                if (type == TYPE_SNAPSHOT) {
+                    pending.put(uuid, new long[]{coinsMinor, gems, totalPlaytime});
+                } else if (type == TYPE_SAVED) {
+                    pending.remove(uuid);
+                }
+            }
+        }
+        return pending;
+    }
+
+    private void replay(DatabaseManager databaseManager, Map<UUID, long[]> pending, int batchSize) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(pending.size());
+        for (Map.Entry<UUID, long[]> entry : pending.entrySet()) {
+            long[] values = entry.getValue();
+            rows.add(new Object[]{Coins.toDecimal(values[0]), (int) values[1], values[2], entry.getKey().toString()});
+        }
+
+        // Si quedan escrituras en cola (anteriores a estos valores), se ponen detrás de ellas:
+        // aplicarlas antes haría que la cola pisara los saldos recuperados al vaciarse
+        if (databaseManager.hasQueuedWrites()) {
+            for (Object[] row : rows) {
+                databaseManager.executeUpdateOrQueue(UPDATE_PLAYER_BALANCES, row);
+            }
+            replayedPlayers = rows.size();
+            return;
+        }
+
+        int size = Math.max(1, batchSize);
+        for (int from = 0; from < rows.size(); from += size) {
+            databaseManager.executeBatch(UPDATE_PLAYER_BALANCES, rows.subList(from, Math.min(rows.size(), from + size)));
+        }
+        replayedPlayers = rows.size();
+    }
+
+    private TreeMap<Long, Path> listSegments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), path);
+                } catch (NumberFormatException ignored) {
+                    // Archivo ajeno al diario
+                }
+            }
+        }
+        return segments;
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Obtiene estadísticas del diario
+     */
+    public JournalStats getStats() {
+        lock.lock();
+        try {
+            return new JournalStats(channel != null, segmentId, records, commits, rotations,
+                    deletedSegments, writeErrors, replayedPlayers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clase para estadísticas del diario
+     */
+    public static class JournalStats {
+        private final boolean active;
+        private final long segmentId;
+        private final long records;
+        private final long commits;
+        private final long rotations;
+        private final long deletedSegments;
+        private final long writeErrors;
+        private final int replayedPlayers;
+
+        public JournalStats(boolean active, long segmentId, long records, long commits, long rotations,
+                            long deletedSegments, long writeErrors, int replayedPlayers) {
+            this.active = active;
+            this.segmentId = segmentId;
+            this.records = records;
+            this.commits = commits;
+            this.rotations = rotations;
+            this.deletedSegments = deletedSegments;
+            this.writeErrors = writeErrors;
+            this.replayedPlayers = replayedPlayers;
+        }
+
+        public boolean isActive() { return active; }
+        public long getSegmentId() { return segmentId; }
+        public long getRecords() { return records; }
+        /** Escrituras a disco; cada una lleva todos los registros acumulados hasta ese momento */
+        public long getCommits() { return commits; }
+        public long getRotations() { return rotations; }
+        public long getDeletedSegments() { return deletedSegments; }
+        public long getWriteErrors() { return writeErrors; }
+        public int getReplayedPlayers() { return replayedPlayers; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "JournalStats{active=%s, segment=%d, records=%d, commits=%d, rotations=%d, deletedSegments=%d, " +
+                            "writeErrors=%d, replayedPlayers=%d}",
+                    active, segmentId, records, commits, rotations, deletedSegments, writeErrors, replayedPlayers
+            );
+        }
+    }
+}
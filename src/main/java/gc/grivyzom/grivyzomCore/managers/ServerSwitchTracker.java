@@ -0,0 +1,211 @@
+package gc.grivyzom.grivyzomCore.managers;
+
+import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Registro diferido de last_server.
+ *
+ * Los cambios de servidor se anotan en memoria y se guardan en lotes cada
+ * server_flush_interval segundos; si un jugador cambia varias veces de
+ * servidor dentro de la misma ventana solo se escribe el último. El valor en
+ * memoria (GrivyzomPlayer.getLastServer) es siempre el vigente.
+ */
+public class ServerSwitchTracker {
+
+    private static final String UPDATE_PLAYER_SERVER = """
+            UPDATE grivyzom_players SET last_server = ? WHERE uuid = ?
+            """;
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final IntSupplier batchSize;
+
+    // Último servidor de cada jugador aún sin guardar
+    private final Map<UUID, String> pending = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public ServerSwitchTracker(DatabaseManager databaseManager, Logger logger, IntSupplier batchSize) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Programa el guardado periódico de los cambios pendientes
+     */
+    public void start(ScheduledExecutorService scheduler, int flushIntervalSeconds) {
+        int interval = Math.max(1, flushIntervalSeconds);
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Anota el servidor actual de un jugador
+     */
+    public void record(UUID uuid, String serverName) {
+        recorded.incrementAndGet();
+        if (pending.put(uuid, serverName) != null) {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    /**
+     * Servidor pendiente de guardar de un jugador, o null
+     */
+    public String getPending(UUID uuid) {
+        return pending.get(uuid);
+    }
+
+    /**
+     * Guarda en lotes el último servidor de cada jugador con cambios.
+     * Cada cambio sigue pendiente hasta que se guarda o pasa a la cola de escrituras.
+     * Debe llamarse desde un único hilo a la vez (planificador o cierre).
+     */
+    public void flush() {
+        flush(0);
+    }
+
+    /**
+     * Como {@link #flush()}, pero no empieza lotes nuevos pasado deadline (System.nanoTime(), 0 = sin límite)
+     */
+    public void flush(long deadline) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UUID> uuids = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<UUID, String> entry : pending.entrySet()) {
+            uuids.add(entry.getKey());
+            rows.add(new Object[]{entry.getValue(), entry.getKey().toString()});
+        }
+
+        int size = Math.max(1, batchSize.getAsInt());
+        for (int from = 0; from < rows.size(); from += size) {
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                MessageUtils.sendWarningMessage(logger, String.format(
+                        "⚠ Plazo agotado: %d servidores de jugadores sin guardar", rows.size() - from));
+                return;
+            }
+            int to = Math.min(rows.size(), from + size);
+            executeBatch(uuids.subList(from, to), rows.subList(from, to));
+        }
+    }
+
+    private void executeBatch(List<UUID> uuids, List<Object[]> rows) {
+        // Sin base de datos o con escrituras en cola se encola, para no adelantarse a ellas
+        DatabaseManager.BatchResult batch = databaseManager.isDegraded()
+                ? null
+                : databaseManager.executeBatchPartially(UPDATE_PLAYER_SERVER, rows);
+        if (batch != null) {
+            batches.incrementAndGet();
+            if (batch.getError() != null) {
+                MessageUtils.sendErrorMessage(logger, "Error al guardar servidores de jugadores: "
+                        + batch.getError().getMessage());
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            UUID uuid = uuids.get(i);
+            String serverName = (String) rows.get(i)[0];
+            if (batch != null && batch.isApplied(i)) {
+                written.incrementAndGet();
+            } else if (!queue(rows.get(i))) {
+                // Sigue pendiente para el siguiente guardado
+                failed.incrementAndGet();
+                continue;
+            }
+            // Solo si no hubo un cambio más reciente mientras tanto
+            pending.remove(uuid, serverName);
+        }
+    }
+
+    /**
+     * Deja en la cola de escrituras una fila que no se pudo guardar (last_server es un
+     * valor absoluto). Devuelve false si la base de datos responde (el error fue de la
+     * fila) o no hay cola: la fila se reintenta en el siguiente guardado.
+     */
+    private boolean queue(Object[] row) {
+        if (!databaseManager.isWriteQueueEnabled() || !databaseManager.isDegraded()) {
+            return false;
+        }
+        try {
+            if (databaseManager.executeUpdateOrQueue(UPDATE_PLAYER_SERVER, row)) {
+                written.incrementAndGet();
+            } else {
+                queued.incrementAndGet();
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Obtiene estadísticas del registro de servidores
+     */
+    public SwitchStats getStats() {
+        return new SwitchStats(pending.size(), recorded.get(), coalesced.get(), written.get(),
+                queued.get(), failed.get(), batches.get());
+    }
+
+    /**
+     * Clase para estadísticas del registro de servidores
+     */
+    public static class SwitchStats {
+        private final int pending;
+        private final long recorded;
+        private final long coalesced;
+        private final long written;
+        private final long queued;
+        private final long failed;
+        private final long batches;
+
+        public SwitchStats(int pending, long recorded, long coalesced, long written, long queued, long failed,
+                           long batches) {
+            this.pending = pending;
+            this.recorded = recorded;
+            this.coalesced = coalesced;
+            this.written = written;
+            this.queued = queued;
+            this.failed = failed;
+            this.batches = batches;
+        }
+
+        public int getPending() { return pending; }
+        public long getRecorded() { return recorded; }
+        public long getCoalesced() { return coalesced; }
+        public long getWritten() { return written; }
+        public long getQueued() { return queued; }
+        public long getFailed() { return failed; }
+        public long getBatches() { return batches; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "SwitchStats{pending=%d, recorded=%d, coalesced=%d, written=%d, queued=%d, failed=%d, " +
+                            "batches=%d}",
+                    pending, recorded, coalesced, written, queued, failed, batches
+            );
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package gc.grivyzom.grivyzomCore.managers;
+
+import gc.grivyzom.grivyzomCore.database.DatabaseManager;
+import gc.grivyzom.grivyzomCore.models.GrivyzomPlayer;
+import gc.grivyzom.grivyzomCore.models.PlayerField;
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Persistencia diferida de jugadores: acumula los cambios en memoria y los
+ * guarda con un único UPDATE por jugador que solo incluye las columnas modificadas.
+ * Los guardados masivos se agrupan en lotes JDBC por combinación de columnas.
+ */
+public class WriteBehindFlusher {
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final Supplier<Collection<GrivyzomPlayer>> playerSource;
+    private final IntSupplier batchSize;
+
+    // UPDATE generado por cada combinación de columnas modificadas
+    private final Map<Integer, String> updateSqlCache = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final AtomicLong flushedPlayers = new AtomicLong();
+    private final AtomicLong writtenColumns = new AtomicLong();
+    private final AtomicLong coalescedMutations = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong queuedFlushes = new AtomicLong();
+    private final AtomicLong executedBatches = new AtomicLong();
+    private final AtomicLong totalBatchNanos = new AtomicLong();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+
+    public WriteBehindFlusher(DatabaseManager databaseManager, Logger logger,
+                              Supplier<Collection<GrivyzomPlayer>> playerSource, IntSupplier batchSize) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.playerSource = playerSource;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Guarda los campos modificados de un jugador.
+     * Devuelve false si no había cambios pendientes.
+     */
+    public boolean flush(GrivyzomPlayer player) throws SQLException {
+        player.getSaveLock().lock();
+        try {
+            PendingRow row = takePendingRow(player);
+            if (row == null) {
+                return false;
+            }
+
+            boolean written;
+            try {
+                // Sin base de datos queda en la cola de escrituras (son valores absolutos)
+                written = databaseManager.executeUpdateOrQueue(getUpdateSql(row.dirtyMask), row.parameters);
+            } catch (SQLException e) {
+                row.restore();
+                throw e;
+            }
+
+            if (written) {
+                row.recordSaved();
+            } else {
+                queuedFlushes.incrementAndGet();
+            }
+            return true;
+
+        } finally {
+            player.getSaveLock().unlock();
+        }
+    }
+
+    /**
+     * Guarda todos los jugadores con cambios pendientes
+     */
+    public void flushAll() {
+        flushAll(0);
+    }
+
+    /**
+     * Guarda los cambios pendientes de todos los jugadores sin pasar de timeoutMillis
+     * (0 = sin límite). Los jugadores que no entren en el plazo conservan sus cambios.
+     */
+    public FlushResult flushAll(long timeoutMillis) {
+        FlushResult result = flushPlayers(playerSource.get(), timeoutMillis);
+
+        if (result.saved > 0 || result.failed > 0) {
+            MessageUtils.sendInfoMessage(logger, String.format(
+                    "Guardado diferido completado: %d guardados, %d errores, %d lotes en %d ms",
+                    result.saved, result.failed, result.batches, result.getElapsedMs()));
+        }
+        if (result.skipped > 0) {
+            MessageUtils.sendWarningMessage(logger, String.format(
+                    "⚠ %d jugadores sin guardar (plazo de %d ms agotado o base de datos no disponible)",
+                    result.skipped, timeoutMillis));
+        }
+        return result;
+    }
+
+    /**
+     * Guarda los jugadores indicados que tengan cambios, en lotes de save_batch_size.
+     * Los jugadores sin cambios se omiten sin tocar la base de datos.
+     */
+    public FlushResult flushPlayers(Iterable<GrivyzomPlayer> players) {
+        return flushPlayers(players, 0);
+    }
+
+    /**
+     * Como {@link #flushPlayers(Iterable)}, pero deja de enviar lotes al pasar timeoutMillis (0 = sin límite)
+     */
+    public FlushResult flushPlayers(Iterable<GrivyzomPlayer> players, long timeoutMillis) {
+        int chunkSize = Math.max(1, batchSize.getAsInt());
+        List<GrivyzomPlayer> chunk = new ArrayList<>(chunkSize);
+        FlushResult result = new FlushResult();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        for (GrivyzomPlayer player : players) {
+            if (!player.isDirty()) {
+                continue;
+            }
+            chunk.add(player);
+            if (chunk.size() >= chunkSize) {
+                flushChunkBefore(chunk, result, timeoutMillis, deadline);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            flushChunkBefore(chunk, result, timeoutMillis, deadline);
+        }
+        return result;
+    }
+
+    private void flushChunkBefore(List<GrivyzomPlayer> chunk, FlushResult result, long timeoutMillis, long deadline) {
+        // Con escrituras en cola se espera a que se vacíe para no adelantarse a ellas
+        if (databaseManager.isDegraded() || (timeoutMillis > 0 && System.nanoTime() - deadline >= 0)) {
+            result.skipped += chunk.size();
+            return;
+        }
+        flushChunk(chunk, result);
+    }
+
+    /**
+     * Guarda un grupo de jugadores con un lote JDBC por combinación de columnas
+     */
+    private void flushChunk(List<GrivyzomPlayer> players, FlushResult result) {
+        List<GrivyzomPlayer> locked = new ArrayList<>(players.size());
+        Map<Integer, List<PendingRow>> rowsByMask = new LinkedHashMap<>();
+
+        try {
+            for (GrivyzomPlayer player : players) {
+                // Si otro hilo ya lo está guardando (p.ej. al desconectarse) se omite sin darlo por guardado
+                if (!player.getSaveLock().tryLock()) {
+                    result.skipped++;
+                    continue;
+                }
+                locked.add(player);
+
+                PendingRow row = takePendingRow(player);
+                if (row != null) {
+                    rowsByMask.computeIfAbsent(row.dirtyMask, mask -> new ArrayList<>()).add(row);
+                }
+            }
+
+            for (Map.Entry<Integer, List<PendingRow>> entry : rowsByMask.entrySet()) {
+                executeBatch(getUpdateSql(entry.getKey()), entry.getValue(), result);
+            }
+
+        } finally {
+            for (GrivyzomPlayer player : locked) {
+                player.getSaveLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Ejecuta un lote y vuelve a marcar como pendientes las filas que fallaron
+     */
+    private void executeBatch(String sql, List<PendingRow> rows, FlushResult result) {
+        List<Object[]> parameterRows = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            parameterRows.add(row.parameters);
+        }
+
+        long start = System.nanoTime();
+        DatabaseManager.BatchResult batch = databaseManager.executeBatchPartially(sql, parameterRows);
+        long elapsed = System.nanoTime() - start;
+
+        executedBatches.incrementAndGet();
+        totalBatchNanos.addAndGet(elapsed);
+        maxBatchNanos.accumulateAndGet(elapsed, Math::max);
+        result.batches++;
+        result.nanos += elapsed;
+
+        int failedRows = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (batch.isApplied(i)) {
+                rows.get(i).recordSaved();
+            } else {
+                rows.get(i).restore();
+                failedRows++;
+            }
+        }
+        result.saved += rows.size() - failedRows;
+        result.failed += failedRows;
+
+        MessageUtils.sendDebugMessage(logger, String.format(
+                "Lote de guardado: %d filas, %d fallidas, %.2f ms",
+                rows.size(), failedRows, elapsed / 1_000_000.0));
+
+        if (batch.getError() != null) {
+            MessageUtils.sendErrorMessage(logger, String.format(
+                    "Error en lote de guardado (%d de %d filas fallidas): %s",
+                    failedRows, rows.size(), batch.getError().getMessage()));
+        }
+    }
+
+    /**
+     * Toma los cambios pendientes de un jugador (debe tenerse su saveLock).
+     * Los valores se leen después de limpiar la máscara para no perder cambios concurrentes.
+     */
+    private PendingRow takePendingRow(GrivyzomPlayer player) {
+        int dirtyMask = player.consumeDirtyFields();
+        if (dirtyMask == 0) {
+            return null;
+        }
+        int mutations = player.consumePendingMutations();
+
+        List<Object> parameters = new ArrayList<>();
+        for (PlayerField field : PlayerField.values()) {
+            if (field.isIn(dirtyMask)) {
+                parameters.add(player.getFieldValue(field));
+            }
+        }
+        parameters.add(player.getUuid().toString());
+
+        return new PendingRow(player, dirtyMask, mutations, parameters.toArray());
+    }
+
+    /**
+     * Construye (y cachea) el UPDATE para una combinación de columnas
+     */
+    private String getUpdateSql(int dirtyMask) {
+        return updateSqlCache.computeIfAbsent(dirtyMask, mask -> {
+            StringBuilder sql = new StringBuilder("UPDATE grivyzom_players SET ");
+            boolean first = true;
+            for (PlayerField field : PlayerField.values()) {
+                if (field.isIn(mask)) {
+                    if (!first) {
+                        sql.append(", ");
+                    }
+                    sql.append(field.getColumn()).append(" = ?");
+                    first = false;
+                }
+            }
+            return sql.append(" WHERE uuid = ?").toString();
+        });
+    }
+
+    /**
+     * Obtiene estadísticas de la persistencia diferida
+     */
+    public FlushStats getStats() {
+        long batches = executedBatches.get();
+        return new FlushStats(
+                flushedPlayers.get(),
+                writtenColumns.get(),
+                coalescedMutations.get(),
+                failedFlushes.get(),
+                queuedFlushes.get(),
+                batches,
+                batches == 0 ? 0.0 : totalBatchNanos.get() / (double) batches / 1_000_000.0,
+                maxBatchNanos.get() / 1_000_000.0
+        );
+    }
+
+    /**
+     * Cambios de un jugador tomados para un guardado
+     */
+    private final class PendingRow {
+        private final GrivyzomPlayer player;
+        private final int dirtyMask;
+        private final int mutations;
+        private final Object[] parameters;
+
+        private PendingRow(GrivyzomPlayer player, int dirtyMask, int mutations, Object[] parameters) {
+            this.player = player;
+            this.dirtyMask = dirtyMask;
+            this.mutations = mutations;
+            this.parameters = parameters;
+        }
+
+        private void recordSaved() {
+            flushedPlayers.incrementAndGet();
+            writtenColumns.addAndGet(Integer.bitCount(dirtyMask));
+            coalescedMutations.addAndGet(Math.max(0, mutations - 1));
+        }
+
+        private void restore() {
+            player.restoreDirtyFields(dirtyMask);
+            player.restorePendingMutations(mutations);
+            failedFlushes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Resultado acumulado de un guardado masivo
+     */
+    public static final class FlushResult {
+        private int saved;
+        private int failed;
+        private int batches;
+        private int skipped;
+        private long nanos;
+
+        public int getSaved() { return saved; }
+        public int getFailed() { return failed; }
+        public int getSkipped() { return skipped; }
+        public int getBatches() { return batches; }
+        public long getElapsedMs() { return nanos / 1_000_000; }
+    }
+
+    /**
+     * Clase para estadísticas de la persistencia diferida
+     */
+    public static class FlushStats {
+        private final long flushedPlayers;
+        private final long writtenColumns;
+        private final long coalescedMutations;
+        private final long failedFlushes;
+        private final long queuedFlushes;
+        private final long batches;
+        private final double averageBatchMs;
+        private final double maxBatchMs;
+
+        public FlushStats(long flushedPlayers, long writtenColumns, long coalescedMutations, long failedFlushes,
+                          long queuedFlushes, long batches, double averageBatchMs, double maxBatchMs) {
+            this.flushedPlayers = flushedPlayers;
+            this.writtenColumns = writtenColumns;
+            this.coalescedMutations = coalescedMutations;
+            this.failedFlushes = failedFlushes;
+            this.queuedFlushes = queuedFlushes;
+            this.batches = batches;
+            this.averageBatchMs = averageBatchMs;
+            this.maxBatchMs = maxBatchMs;
+        }
+
+        public long getFlushedPlayers() { return flushedPlayers; }
+        public long getWrittenColumns() { return writtenColumns; }
+        public long getCoalescedMutations() { return coalescedMutations; }
+        public long getFailedFlushes() { return failedFlushes; }
+        /** Guardados que quedaron en la cola de escrituras en vez de llegar a la base de datos */
+        public long getQueuedFlushes() { return queuedFlushes; }
+        public long getBatches() { return batches; }
+        public double getAverageBatchMs() { return averageBatchMs; }
+        public double getMaxBatchMs() { return maxBatchMs; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "FlushStats{flushedPlayers=%d, writtenColumns=%d, coalescedMutations=%d, failedFlushes=%d, " +
+                            "queuedFlushes=%d, batches=%d, avgBatch=%.2fms, maxBatch=%.2fms}",
+                    flushedPlayers, writtenColumns, coalescedMutations, failedFlushes,
+                    queuedFlushes, batches, averageBatchMs, maxBatchMs
+            );
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Manejadores de mensajes de plugin por canal.
+ *
+ * Formato compacto: un byte {@link #OPCODE_MARKER} seguido del código de operación
+ * (0-255) y los campos del mensaje; se despacha con un acceso a un array, sin
+ * decodificar texto. Formato antiguo: el tipo como texto (writeUTF) seguido de los
+ * campos. Los dos no se confunden porque el primer byte de writeUTF es la parte alta
+ * de la longitud del texto, que nunca llega a 0xFF para un tipo de mensaje.
+ */
+public class MessageHandlerRegistry {
+
+    public static final int OPCODE_MARKER = 0xFF;
+    public static final int MAX_OPCODE = 0xFF;
+
+    /**
+     * Procesa un mensaje recibido; input queda justo después del tipo u opcode
+     */
+    @FunctionalInterface
+    public interface MessageHandler {
+        void handle(ServerConnection source, MinecraftChannelIdentifier channel, DataInputStream input) throws IOException;
+    }
+
+    private final Map<MinecraftChannelIdentifier, ChannelHandlers> channels = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final AtomicLong opcodeMessages = new AtomicLong();
+    private final AtomicLong legacyMessages = new AtomicLong();
+    private final AtomicLong unhandled = new AtomicLong();
+
+    /**
+     * Registra el manejador de un código de operación en un canal.
+     * legacyType (puede ser null) es el nombre del mismo mensaje en el formato antiguo.
+     * Devuelve false, sin cambiar nada, si el opcode o el nombre ya tienen manejador en el canal.
+     */
+    public boolean register(MinecraftChannelIdentifier channel, int opcode, String legacyType, MessageHandler handler) {
+        checkOpcode(opcode);
+        ChannelHandlers handlers = channels.computeIfAbsent(channel, id -> new ChannelHandlers());
+        // Los registros son pocos; el bloqueo solo evita dejar a medias opcode y nombre
+        synchronized (handlers) {
+            if (handlers.byOpcode.get(opcode) != null
+                    || (legacyType != null && handlers.byLegacyType.containsKey(legacyType))) {
+                return false;
+            }
+            handlers.byOpcode.set(opcode, handler);
+            if (legacyType != null) {
+                handlers.byLegacyType.put(legacyType, handler);
+                handlers.legacyTypes.set(opcode, legacyType);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Retira el manejador de un código de operación (y su nombre antiguo, si lo tenía)
+     */
+    public void unregister(MinecraftChannelIdentifier channel, int opcode) {
+        checkOpcode(opcode);
+        ChannelHandlers handlers = channels.get(channel);
+        if (handlers == null) {
+            return;
+        }
+        synchronized (handlers) {
+            handlers.byOpcode.set(opcode, null);
+            String legacyType = handlers.legacyTypes.getAndSet(opcode, null);
+            if (legacyType != null) {
+                handlers.byLegacyType.remove(legacyType);
+            }
+        }
+    }
+
+    /**
+     * Despacha un mensaje a su manejador; devuelve false si el canal o el tipo no tienen manejador
+     */
+    public boolean dispatch(ServerConnection source, MinecraftChannelIdentifier channel, byte[] data) throws IOException {
+        ChannelHandlers handlers = channels.get(channel);
+        if (handlers == null || data.length == 0) {
+            unhandled.incrementAndGet();
+            return false;
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        MessageHandler handler;
+        if ((data[0] & 0xFF) == OPCODE_MARKER) {
+            input.readUnsignedByte();
+            handler = data.length > 1 ? handlers.byOpcode.get(input.readUnsignedByte()) : null;
+            opcodeMessages.incrementAndGet();
+        } else {
+            handler = handlers.byLegacyType.get(input.readUTF());
+            legacyMessages.incrementAndGet();
+        }
+
+        if (handler == null) {
+            unhandled.incrementAndGet();
+            return false;
+        }
+        handler.handle(source, channel, input);
+        return true;
+    }
+
+    /**
+     * Escribe la cabecera del formato compacto para enviar un mensaje con opcode
+     */
+    public static void writeOpcode(DataOutputStream output, int opcode) throws IOException {
+        checkOpcode(opcode);
+        output.writeByte(OPCODE_MARKER);
+        output.writeByte(opcode);
+    }
+
+    /**
+     * Describe el tipo de un mensaje para los registros de depuración
+     */
+    public static String describe(byte[] data) {
+        if (data.length >= 2 && (data[0] & 0xFF) == OPCODE_MARKER) {
+            return String.format("opcode 0x%02X", data[1] & 0xFF);
+        }
+        try {
+            return new DataInputStream(new ByteArrayInputStream(data)).readUTF();
+        } catch (IOException e) {
+            return "desconocido";
+        }
+    }
+
+    private static void checkOpcode(int opcode) {
+        if (opcode < 0 || opcode > MAX_OPCODE) {
+            throw new IllegalArgumentException("Código de operación fuera de rango: " + opcode);
+        }
+    }
+
+    /**
+     * Obtiene estadísticas del despacho de mensajes
+     */
+    public HandlerStats getStats() {
+        return new HandlerStats(channels.size(), opcodeMessages.get(), legacyMessages.get(), unhandled.get());
+    }
+
+    private static final class ChannelHandlers {
+        private final AtomicReferenceArray<MessageHandler> byOpcode = new AtomicReferenceArray<>(MAX_OPCODE + 1);
+        private final Map<String, MessageHandler> byLegacyType = new ConcurrentHashMap<>();
+        // Nombre antiguo registrado con cada opcode, para retirarlo con él
+        private final AtomicReferenceArray<String> legacyTypes = new AtomicReferenceArray<>(MAX_OPCODE + 1);
+    }
+
+    /**
+     * Clase para estadísticas del despacho de mensajes
+     */
+    public static class HandlerStats {
+        private final int channels;
+        private final long opcodeMessages;
+        private final long legacyMessages;
+        private final long unhandled;
+
+        public HandlerStats(int channels, long opcodeMessages, long legacyMessages, long unhandled) {
+            this.channels = channels;
+            this.opcodeMessages = opcodeMessages;
+            this.legacyMessages = legacyMessages;
+            this.unhandled = unhandled;
+        }
+
+        public int getChannels() { return channels; }
+        public long getOpcodeMessages() { return opcodeMessages; }
+        public long getLegacyMessages() { return legacyMessages; }
+        public long getUnhandled() { return unhandled; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "HandlerStats{channels=%d, opcode=%d, legacy=%d, unhandled=%d}",
+                    channels, opcodeMessages, legacyMessages, unhandled
+            );
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import com.velocitypowered.api.proxy.messages.ChannelMessageSink;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mensajes pendientes para servidores sin jugadores conectados.
+ *
+ * Un mensaje de plugin solo puede viajar por la conexión de un jugador, así que
+ * los envíos a servidores vacíos se guardan aquí hasta que entra alguien
+ * (ver {@link #drain}). Cada servidor tiene una cola limitada: al llenarse se
+ * descarta el mensaje más antiguo, y los que superan su TTL se descartan sin
+ * enviar. Un mensaje con clave de reemplazo sustituye al pendiente con la misma
+ * clave (p.ej. MAINTENANCE END deja sin efecto un MAINTENANCE START sin entregar).
+ */
+public class OutboundQueue {
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final Map<String, Deque<QueuedMessage>> queues = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong droppedOverflow = new AtomicLong();
+    private final AtomicLong droppedExpired = new AtomicLong();
+
+    public OutboundQueue(int capacity, long ttlMillis) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlMillis = Math.max(1, ttlMillis);
+    }
+
+    /**
+     * Guarda un mensaje para un servidor. supersedeKey puede ser null si el mensaje no
+     * reemplaza a ninguno. El payload se comparte con otros envíos y no se modifica.
+     */
+    public void offer(String serverName, MinecraftChannelIdentifier channel, String supersedeKey, byte[] payload) {
+        long now = System.currentTimeMillis();
+        Deque<QueuedMessage> queue = queues.computeIfAbsent(serverName, name -> new ArrayDeque<>());
+
+        synchronized (queue) {
+            purgeExpired(queue, now);
+
+            if (supersedeKey != null) {
+                Iterator<QueuedMessage> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    QueuedMessage message = iterator.next();
+                    if (supersedeKey.equals(message.supersedeKey) && message.channel.equals(channel)) {
+                        iterator.remove();
+                        coalesced.incrementAndGet();
+                    }
+                }
+            }
+
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                droppedOverflow.incrementAndGet();
+            }
+            queue.addLast(new QueuedMessage(channel, supersedeKey, payload, now + ttlMillis));
+            queued.incrementAndGet();
+        }
+    }
+
+    /**
+     * Envía en orden los mensajes pendientes de un servidor por la conexión dada.
+     * Si un envío falla, ese mensaje y los siguientes se quedan en la cola.
+     * Devuelve el número de mensajes entregados.
+     */
+    public int drain(String serverName, ChannelMessageSink connection) {
+        Deque<QueuedMessage> queue = queues.get(serverName);
+        if (queue == null) {
+            return 0;
+        }
+
+        int sent = 0;
+        synchronized (queue) {
+            purgeExpired(queue, System.currentTimeMillis());
+            QueuedMessage message;
+            while ((message = queue.peekFirst()) != null) {
+                if (!connection.sendPluginMessage(message.channel, message.payload)) {
+                    break;
+                }
+                queue.pollFirst();
+                sent++;
+            }
+        }
+        delivered.addAndGet(sent);
+        return sent;
+    }
+
+    /**
+     * Mensajes pendientes de un servidor
+     */
+    public int size(String serverName) {
+        Deque<QueuedMessage> queue = queues.get(serverName);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Descarta todos los mensajes pendientes
+     */
+    public void clear() {
+        queues.clear();
+    }
+
+    private void purgeExpired(Deque<QueuedMessage> queue, long now) {
+        // Se encolan en orden de llegada con el mismo TTL, así que los vencidos están al principio
+        while (!queue.isEmpty() && queue.peekFirst().expiresAt <= now) {
+            queue.pollFirst();
+            droppedExpired.incrementAndGet();
+        }
+    }
+
+    /**
+     * Obtiene estadísticas de las colas
+     */
+    public OutboundStats getStats() {
+        int pending = 0;
+        for (Deque<QueuedMessage> queue : queues.values()) {
+            synchronized (queue) {
+                pending += queue.size();
+            }
+        }
+        return new OutboundStats(pending, queued.get(), delivered.get(), coalesced.get(),
+                droppedOverflow.get(), droppedExpired.get());
+    }
+
+    private static final class QueuedMessage {
+        private final MinecraftChannelIdentifier channel;
+        private final String supersedeKey;
+        private final byte[] payload;
+        private final long expiresAt;
+
+        private QueuedMessage(MinecraftChannelIdentifier channel, String supersedeKey, byte[] payload, long expiresAt) {
+            this.channel = channel;
+            this.supersedeKey = supersedeKey;
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Clase para estadísticas de las colas de salida
+     */
+    public static class OutboundStats {
+        private final int pending;
+        private final long queued;
+        private final long delivered;
+        private final long coalesced;
+        private final long droppedOverflow;
+        private final long droppedExpired;
+
+        public OutboundStats(int pending, long queued, long delivered, long coalesced,
+                             long droppedOverflow, long droppedExpired) {
+            this.pending = pending;
+            this.queued = queued;
+            this.delivered = delivered;
+            this.coalesced = coalesced;
+            this.droppedOverflow = droppedOverflow;
+            this.droppedExpired = droppedExpired;
+        }
+
+        public int getPending() { return pending; }
+        public long getQueued() { return queued; }
+        public long getDelivered() { return delivered; }
+        public long getCoalesced() { return coalesced; }
+        public long getDroppedOverflow() { return droppedOverflow; }
+        public long getDroppedExpired() { return droppedExpired; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "OutboundStats{pending=%d, queued=%d, delivered=%d, coalesced=%d, droppedOverflow=%d, " +
+                            "droppedExpired=%d}",
+                    pending, queued, delivered, coalesced, droppedOverflow, droppedExpired
+            );
+        }
+    }
+}
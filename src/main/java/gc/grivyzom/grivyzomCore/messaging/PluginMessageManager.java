@@ -2,23 +2,45 @@ package gc.grivyzom.grivyzomCore.messaging;
 
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
 import gc.grivyzom.grivyzomCore.Main;
+import gc.grivyzom.grivyzomCore.config.ConfigManager;
 import gc.grivyzom.grivyzomCore.utils.MessageUtils;
 import org.slf4j.Logger;
 
 import java.io.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Gestor de mensajería entre plugins para permitir comunicación
- * entre GrivyzomCore y otros plugins del network
+ * entre GrivyzomCore y otros plugins del network.
+ *
+ * PING y STATUS_REQUEST llevan al final un identificador de correlación (long)
+ * que se devuelve al final de PONG y STATUS_RESPONSE; los servidores que no lo
+ * conocen ignoran el campo extra. Ver {@link RequestTracker}.
  */
 public class PluginMessageManager {
 
     private final ProxyServer server;
     private final Logger logger;
+    private final RequestTracker requestTracker;
+    private final ServerStatusRegistry statusRegistry = new ServerStatusRegistry();
+    private final OutboundQueue outboundQueue;
+    private final MessageHandlerRegistry handlerRegistry = new MessageHandlerRegistry();
+    private ScheduledExecutorService statusScheduler;
 
     // Canales de comunicación
     private static final MinecraftChannelIdentifier GRIVYZOM_CHANNEL =
@@ -33,15 +55,104 @@ public class PluginMessageManager {
     private static final MinecraftChannelIdentifier PVP_CHANNEL =
             MinecraftChannelIdentifier.from("grivyzom:pvp");
 
+    private static final MinecraftChannelIdentifier[] CHANNELS =
+            {GRIVYZOM_CHANNEL, ECONOMY_CHANNEL, RANKUP_CHANNEL, PVP_CHANNEL};
+
+    // Códigos de operación de los mensajes básicos (formato compacto, ver MessageHandlerRegistry)
+    public static final int OP_PING = 0x01;
+    public static final int OP_PONG = 0x02;
+    public static final int OP_STATUS_REQUEST = 0x03;
+    public static final int OP_STATUS_RESPONSE = 0x04;
+
     // Tipos de mensajes básicos
     private static final String PING = "PING";
     private static final String PONG = "PONG";
     private static final String STATUS_REQUEST = "STATUS_REQUEST";
     private static final String STATUS_RESPONSE = "STATUS_RESPONSE";
+    private static final String MAINTENANCE = "MAINTENANCE";
+
+    // Mensajes en los que el último enviado deja sin efecto a los anteriores sin entregar
+    private static final Set<String> SUPERSEDING_MESSAGES = Set.of(MAINTENANCE);
+
+    // Sin identificador de correlación (peticiones antiguas)
+    private static final long NO_CORRELATION_ID = 0L;
+    private static final int DEFAULT_MESSAGE_TIMEOUT = 5000;
+
+    // Métricas de los envíos a todos los servidores
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+    private final AtomicLong encodedBytes = new AtomicLong();
+
+    /**
+     * Escribe el contenido de un mensaje
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
 
     public PluginMessageManager(ProxyServer server, Logger logger) {
+        this(server, logger, createOutboundQueue(Main.getInstance().getConfigManager()));
+    }
+
+    /**
+     * outboundQueue puede ser null para no guardar los mensajes a servidores vacíos
+     */
+    PluginMessageManager(ProxyServer server, Logger logger, OutboundQueue outboundQueue) {
         this.server = server;
         this.logger = logger;
+        this.requestTracker = new RequestTracker(logger);
+        this.outboundQueue = outboundQueue;
+
+        registerCoreHandlers();
+    }
+
+    private static OutboundQueue createOutboundQueue(ConfigManager config) {
+        return config.getOutboundQueueSize() > 0
+                ? new OutboundQueue(config.getOutboundQueueSize(), config.getOutboundMessageTtl() * 1000L)
+                : null;
+    }
+
+    /**
+     * Registra los mensajes básicos en todos los canales, con opcode y con su nombre antiguo
+     */
+    private void registerCoreHandlers() {
+        for (MinecraftChannelIdentifier channel : CHANNELS) {
+            handlerRegistry.register(channel, OP_PING, PING,
+                    (source, id, input) -> handlePing(source, id, readCorrelationId(input)));
+            handlerRegistry.register(channel, OP_STATUS_REQUEST, STATUS_REQUEST,
+                    (source, id, input) -> handleStatusRequest(source, id, readCorrelationId(input)));
+            handlerRegistry.register(channel, OP_PONG, PONG,
+                    (source, id, input) -> handleResponse(source, PONG, input));
+            handlerRegistry.register(channel, OP_STATUS_RESPONSE, STATUS_RESPONSE,
+                    (source, id, input) -> handleResponse(source, STATUS_RESPONSE, input));
+        }
+    }
+
+    /**
+     * Registra un manejador para un código de operación de un canal, para que otros
+     * plugins procesen sus mensajes sin pasar por el núcleo. Devuelve false si el
+     * opcode ya tiene manejador en ese canal; los de los mensajes básicos
+     * (OP_PING a OP_STATUS_RESPONSE) están reservados.
+     */
+    public boolean registerHandler(MinecraftChannelIdentifier channel, int opcode,
+                                   MessageHandlerRegistry.MessageHandler handler) {
+        checkNotReserved(opcode);
+        return handlerRegistry.register(channel, opcode, null, handler);
+    }
+
+    /**
+     * Retira el manejador de un código de operación de un canal
+     */
+    public void unregisterHandler(MinecraftChannelIdentifier channel, int opcode) {
+        checkNotReserved(opcode);
+        handlerRegistry.unregister(channel, opcode);
+    }
+
+    private static void checkNotReserved(int opcode) {
+        if (opcode >= OP_PING && opcode <= OP_STATUS_RESPONSE) {
+            throw new IllegalArgumentException(String.format("Código de operación reservado: 0x%02X", opcode));
+        }
     }
 
     /**
@@ -56,6 +167,8 @@ public class PluginMessageManager {
 
             // Registrar el listener de eventos
             server.getEventManager().register(Main.getInstance(), this);
+            requestTracker.start();
+            startStatusRefresh();
 
             MessageUtils.sendSuccessMessage(logger, "📡 Canales de mensajería registrados correctamente");
             MessageUtils.sendInfoMessage(logger, "  🔗 grivyzom:core - Canal principal");
@@ -77,6 +190,13 @@ public class PluginMessageManager {
             server.getChannelRegistrar().unregister(ECONOMY_CHANNEL);
             server.getChannelRegistrar().unregister(RANKUP_CHANNEL);
             server.getChannelRegistrar().unregister(PVP_CHANNEL);
+            if (statusScheduler != null) {
+                statusScheduler.shutdownNow();
+            }
+            requestTracker.shutdown();
+            if (outboundQueue != null) {
+                outboundQueue.clear();
+            }
 
             MessageUtils.sendInfoMessage(logger, "📡 Canales de mensajería desregistrados");
 
@@ -85,6 +205,49 @@ public class PluginMessageManager {
         }
     }
 
+    /**
+     * Programa la consulta periódica del estado de los servidores
+     */
+    private void startStatusRefresh() {
+        int interval = Main.getInstance().getConfigManager().getStatusRefreshInterval();
+        if (interval <= 0) {
+            return;
+        }
+
+        statusScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GrivyzomCore-server-status");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statusScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                requestStatusFromAllServers();
+            } catch (RuntimeException e) {
+                MessageUtils.sendErrorMessage(logger, "❌ Error al consultar el estado de los servidores: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Entrega los mensajes guardados para un servidor en cuanto entra un jugador
+     */
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        if (outboundQueue == null) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        player.getCurrentServer().ifPresent(connection -> {
+            String serverName = connection.getServerInfo().getName();
+            int delivered = outboundQueue.drain(serverName, connection);
+            if (delivered > 0 && Main.getInstance().getConfigManager().isDebugMode()) {
+                MessageUtils.sendDebugMessage(logger,
+                        String.format("📬 %d mensajes pendientes entregados a %s", delivered, serverName));
+            }
+        });
+    }
+
     /**
      * Maneja los mensajes recibidos de otros plugins
      */
@@ -104,20 +267,22 @@ public class PluginMessageManager {
         MinecraftChannelIdentifier identifier = (MinecraftChannelIdentifier) event.getIdentifier();
 
         try {
-            ByteArrayInputStream stream = new ByteArrayInputStream(event.getData());
-            DataInputStream input = new DataInputStream(stream);
-
-            String messageType = input.readUTF();
+            byte[] data = event.getData();
 
             // Log de debug si está habilitado
             if (Main.getInstance().getConfigManager().isDebugMode()) {
                 MessageUtils.sendDebugMessage(logger,
                         String.format("📨 Mensaje recibido - Canal: %s, Tipo: %s, Servidor: %s",
-                                identifier.getId(), messageType, serverConnection.getServerInfo().getName()));
+                                identifier.getId(), MessageHandlerRegistry.describe(data),
+                                serverConnection.getServerInfo().getName()));
             }
 
-            // Procesar según el canal y tipo de mensaje
-            handleMessage(serverConnection, identifier, messageType, input);
+            // Despachar al manejador registrado para el canal y el tipo de mensaje
+            if (!handlerRegistry.dispatch(serverConnection, identifier, data)
+                    && Main.getInstance().getConfigManager().isDebugMode()) {
+                MessageUtils.sendDebugMessage(logger, "⚠️ Mensaje no reconocido: "
+                        + MessageHandlerRegistry.describe(data) + " en canal: " + identifier.getId());
+            }
 
         } catch (IOException e) {
             MessageUtils.sendErrorMessage(logger,
@@ -126,36 +291,53 @@ public class PluginMessageManager {
     }
 
     /**
-     * Maneja los diferentes tipos de mensajes según el canal
+     * Lee el identificador de correlación de PING y STATUS_REQUEST (tras su marca de tiempo)
      */
-    private void handleMessage(ServerConnection serverConnection, MinecraftChannelIdentifier identifier,
-                               String messageType, DataInputStream input) throws IOException {
-
-        switch (messageType) {
-            case PING -> handlePing(serverConnection, identifier);
-            case STATUS_REQUEST -> handleStatusRequest(serverConnection, identifier);
-            default -> {
-                if (Main.getInstance().getConfigManager().isDebugMode()) {
-                    MessageUtils.sendDebugMessage(logger,
-                            "⚠️ Mensaje no reconocido: " + messageType + " en canal: " + identifier.getId());
-                }
-            }
+    private long readCorrelationId(DataInputStream input) throws IOException {
+        if (input.available() < 2 * Long.BYTES) {
+            return NO_CORRELATION_ID;
+        }
+        input.readLong();
+        return input.readLong();
+    }
+
+    /**
+     * Entrega una respuesta a la petición que la esperaba; el identificador va en los últimos 8 bytes
+     */
+    private void handleResponse(ServerConnection serverConnection, String messageType,
+                                DataInputStream input) throws IOException {
+        String serverName = serverConnection.getServerInfo().getName();
+        int fieldsLength = input.available() - Long.BYTES;
+        if (fieldsLength < 0) {
+            MessageUtils.sendDebugMessage(logger, "⚠️ " + messageType + " sin identificador de " + serverName);
+            return;
+        }
+
+        byte[] fields = input.readNBytes(fieldsLength);
+        long correlationId = input.readLong();
+        if (!requestTracker.complete(correlationId, serverName, messageType, fields)
+                && Main.getInstance().getConfigManager().isDebugMode()) {
+            MessageUtils.sendDebugMessage(logger, String.format(
+                    "⌛ %s de %s sin petición pendiente (id %d)", messageType, serverName, correlationId));
         }
     }
 
     /**
      * Maneja mensajes PING (responde con PONG)
      */
-    private void handlePing(ServerConnection serverConnection, MinecraftChannelIdentifier channel) {
+    private void handlePing(ServerConnection serverConnection, MinecraftChannelIdentifier channel,
+                            long correlationId) {
         try {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            DataOutputStream output = new DataOutputStream(stream);
-
-            output.writeUTF(PONG);
-            output.writeUTF("GrivyzomCore");
-            output.writeLong(System.currentTimeMillis());
+            byte[] payload = encode(output -> {
+                output.writeUTF(PONG);
+                output.writeUTF("GrivyzomCore");
+                output.writeLong(System.currentTimeMillis());
+                if (correlationId != NO_CORRELATION_ID) {
+                    output.writeLong(correlationId);
+                }
+            });
 
-            serverConnection.sendPluginMessage(channel, stream.toByteArray());
+            serverConnection.sendPluginMessage(channel, payload);
 
             if (Main.getInstance().getConfigManager().isDebugMode()) {
                 MessageUtils.sendDebugMessage(logger,
@@ -170,18 +352,21 @@ public class PluginMessageManager {
     /**
      * Maneja solicitudes de estado del sistema
      */
-    private void handleStatusRequest(ServerConnection serverConnection, MinecraftChannelIdentifier channel) {
+    private void handleStatusRequest(ServerConnection serverConnection, MinecraftChannelIdentifier channel,
+                                     long correlationId) {
         try {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            DataOutputStream output = new DataOutputStream(stream);
-
-            output.writeUTF(STATUS_RESPONSE);
-            output.writeBoolean(Main.getInstance().getDatabaseManager().isConnected());
-            output.writeLong(System.currentTimeMillis());
-            output.writeInt(server.getPlayerCount());
-            output.writeUTF("GrivyzomCore v0.1-SNAPSHOT");
+            byte[] payload = encode(output -> {
+                output.writeUTF(STATUS_RESPONSE);
+                output.writeBoolean(Main.getInstance().getDatabaseManager().isConnected());
+                output.writeLong(System.currentTimeMillis());
+                output.writeInt(server.getPlayerCount());
+                output.writeUTF("GrivyzomCore v0.1-SNAPSHOT");
+                if (correlationId != NO_CORRELATION_ID) {
+                    output.writeLong(correlationId);
+                }
+            });
 
-            serverConnection.sendPluginMessage(channel, stream.toByteArray());
+            serverConnection.sendPluginMessage(channel, payload);
 
             MessageUtils.sendDebugMessage(logger,
                     "📊 Estado del sistema enviado a " + serverConnection.getServerInfo().getName());
@@ -192,55 +377,28 @@ public class PluginMessageManager {
     }
 
     /**
-     * Envía un mensaje PING a todos los servidores conectados
+     * Envía un mensaje PING a todos los servidores conectados.
+     * Devuelve el PONG esperado de cada servidor al que se envió; los que no
+     * respondan dentro de message_timeout terminan con TimeoutException.
      */
-    public void pingAllServers() {
-        server.getAllServers().forEach(serverInfo -> {
-            serverInfo.getPlayersConnected().stream().findFirst().ifPresent(player -> {
-                player.getCurrentServer().ifPresent(connection -> {
-                    try {
-                        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                        DataOutputStream output = new DataOutputStream(stream);
-
-                        output.writeUTF(PING);
-                        output.writeLong(System.currentTimeMillis());
-
-                        connection.sendPluginMessage(GRIVYZOM_CHANNEL, stream.toByteArray());
-
-                    } catch (IOException e) {
-                        MessageUtils.sendErrorMessage(logger,
-                                "❌ Error al enviar PING a " + serverInfo.getServerInfo().getName() + ": " + e.getMessage()); // ✅ FIX: getServerInfo().getName()
-                    }
-                });
-            });
-        });
+    public Map<String, CompletableFuture<PluginResponse>> pingAllServers() {
+        long timestamp = System.currentTimeMillis();
+        Map<String, CompletableFuture<PluginResponse>> responses = request(GRIVYZOM_CHANNEL, PING,
+                output -> output.writeLong(timestamp));
 
         MessageUtils.sendDebugMessage(logger, "🏓 PING enviado a todos los servidores");
+        return responses;
     }
 
     /**
      * Envía un mensaje a todos los servidores conectados
      */
     public void broadcastMessage(String messageType, String... data) {
-        server.getAllServers().forEach(serverInfo -> {
-            serverInfo.getPlayersConnected().stream().findFirst().ifPresent(player -> {
-                try {
-                    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    DataOutputStream output = new DataOutputStream(stream);
-
-                    output.writeUTF(messageType);
-                    for (String datum : data) {
-                        output.writeUTF(datum);
-                    }
-
-                    player.getCurrentServer().ifPresent(connection ->
-                            connection.sendPluginMessage(GRIVYZOM_CHANNEL, stream.toByteArray()));
-
-                } catch (IOException e) {
-                    MessageUtils.sendErrorMessage(logger,
-                            "❌ Error al enviar mensaje broadcast: " + e.getMessage());
-                }
-            });
+        broadcast(GRIVYZOM_CHANNEL, messageType, output -> {
+            output.writeUTF(messageType);
+            for (String datum : data) {
+                output.writeUTF(datum);
+            }
         });
 
         if (Main.getInstance().getConfigManager().isDebugMode()) {
@@ -248,12 +406,107 @@ public class PluginMessageManager {
         }
     }
 
+    /**
+     * Envía una petición a todos los servidores con el mismo identificador de correlación
+     * y devuelve la respuesta esperada de cada servidor al que se envió.
+     * fields escribe los campos que van entre el tipo y el identificador.
+     */
+    private Map<String, CompletableFuture<PluginResponse>> request(MinecraftChannelIdentifier channel,
+                                                                   String messageType, PayloadWriter fields) {
+        RequestTracker.Request request = requestTracker.open(messageType);
+        broadcast(channel, messageType, output -> {
+            output.writeUTF(messageType);
+            fields.write(output);
+            output.writeLong(request.getId());
+        }, request);
+
+        int timeout = Main.getInstance().getConfigManager().getMessageTimeout();
+        Map<String, CompletableFuture<PluginResponse>> responses =
+                request.sent(timeout > 0 ? timeout : DEFAULT_MESSAGE_TIMEOUT);
+
+        // Toda respuesta actualiza la tabla de estado, la haya pedido quien la haya pedido
+        responses.forEach((serverName, response) -> response.whenComplete((result, error) -> {
+            if (result != null) {
+                statusRegistry.recordResponse(result);
+            } else if (error instanceof TimeoutException) {
+                statusRegistry.recordTimeout(serverName);
+            }
+        }));
+        return responses;
+    }
+
+    /**
+     * Codifica el mensaje una sola vez y envía el mismo array a todos los servidores
+     * con algún jugador conectado; para los demás se guarda en la cola de salida.
+     * Las peticiones no se guardan: vencerían antes de poder responderse.
+     * Devuelve el número de servidores que lo recibieron.
+     */
+    int broadcast(MinecraftChannelIdentifier channel, String messageType, PayloadWriter writer) {
+        return broadcast(channel, messageType, writer, null);
+    }
+
+    private int broadcast(MinecraftChannelIdentifier channel, String messageType, PayloadWriter writer,
+                          RequestTracker.Request request) {
+        byte[] payload;
+        try {
+            payload = encode(writer);
+        } catch (IOException e) {
+            MessageUtils.sendErrorMessage(logger,
+                    "❌ Error al codificar mensaje broadcast " + messageType + ": " + e.getMessage());
+            return 0;
+        }
+
+        // El array se comparte entre todos los envíos: no debe modificarse después
+        int delivered = 0;
+        for (RegisteredServer registeredServer : server.getAllServers()) {
+            String serverName = registeredServer.getServerInfo().getName();
+            if (request != null) {
+                request.expect(serverName);
+            } else if (outboundQueue != null && outboundQueue.size(serverName) > 0) {
+                // Primero lo que quedó pendiente, para conservar el orden; si no se entregó
+                // todo, el nuevo va detrás en la cola en lugar de adelantarse
+                outboundQueue.drain(serverName, registeredServer);
+                if (outboundQueue.size(serverName) > 0) {
+                    outboundQueue.offer(serverName, channel,
+                            SUPERSEDING_MESSAGES.contains(messageType) ? messageType : null, payload);
+                    continue;
+                }
+            }
+
+            // Sin jugadores conectados no hay conexión por la que enviarlo
+            if (registeredServer.sendPluginMessage(channel, payload)) {
+                delivered++;
+            } else if (request != null) {
+                request.cancel(serverName);
+            } else if (outboundQueue != null) {
+                outboundQueue.offer(serverName, channel,
+                        SUPERSEDING_MESSAGES.contains(messageType) ? messageType : null, payload);
+            }
+        }
+
+        broadcasts.incrementAndGet();
+        deliveries.addAndGet(delivered);
+        encodedBytes.addAndGet(payload.length);
+        return delivered;
+    }
+
+    /**
+     * Codifica un mensaje en un array del tamaño justo
+     */
+    private static byte[] encode(PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(stream);
+        writer.write(output);
+        output.flush();
+        return stream.toByteArray();
+    }
+
     /**
      * Envía notificación de mantenimiento a todos los servidores
      */
     public void notifyMaintenance(boolean isStarting) {
         String status = isStarting ? "START" : "END";
-        broadcastMessage("MAINTENANCE", status, String.valueOf(System.currentTimeMillis()));
+        broadcastMessage(MAINTENANCE, status, String.valueOf(System.currentTimeMillis()));
 
         MessageUtils.sendInfoMessage(logger,
                 "🔧 Notificación de mantenimiento enviada: " + (isStarting ? "INICIANDO" : "FINALIZANDO"));
@@ -262,28 +515,13 @@ public class PluginMessageManager {
     /**
      * Solicita el estado de todos los servidores
      */
-    public void requestStatusFromAllServers() {
-        server.getAllServers().forEach(serverInfo -> {
-            serverInfo.getPlayersConnected().stream().findFirst().ifPresent(player -> {
-                player.getCurrentServer().ifPresent(connection -> {
-                    try {
-                        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                        DataOutputStream output = new DataOutputStream(stream);
-
-                        output.writeUTF(STATUS_REQUEST);
-                        output.writeLong(System.currentTimeMillis());
-
-                        connection.sendPluginMessage(GRIVYZOM_CHANNEL, stream.toByteArray());
-
-                    } catch (IOException e) {
-                        MessageUtils.sendErrorMessage(logger,
-                                "❌ Error al solicitar estado de " + serverInfo.getServerInfo().getName() + ": " + e.getMessage()); // ✅ FIX: getServerInfo().getName()
-                    }
-                });
-            });
-        });
+    public Map<String, CompletableFuture<PluginResponse>> requestStatusFromAllServers() {
+        long timestamp = System.currentTimeMillis();
+        Map<String, CompletableFuture<PluginResponse>> responses = request(GRIVYZOM_CHANNEL, STATUS_REQUEST,
+                output -> output.writeLong(timestamp));
 
         MessageUtils.sendDebugMessage(logger, "📊 Solicitud de estado enviada a todos los servidores");
+        return responses;
     }
 
     /**
@@ -296,10 +534,49 @@ public class PluginMessageManager {
         return new ChannelStats(
                 registeredChannels,
                 server.getAllServers().size(),
-                server.getPlayerCount()
+                server.getPlayerCount(),
+                broadcasts.get(),
+                deliveries.get(),
+                encodedBytes.get()
         );
     }
 
+    /**
+     * Último estado conocido de un servidor (sin enviar ningún mensaje), o null si
+     * aún no se le ha consultado. Se refresca cada status_refresh_interval.
+     */
+    public ServerStatusRegistry.ServerStatus getServerStatus(String serverName) {
+        return statusRegistry.get(serverName);
+    }
+
+    /**
+     * Último estado conocido de todos los servidores consultados
+     */
+    public Collection<ServerStatusRegistry.ServerStatus> getServerStatuses() {
+        return statusRegistry.getAll();
+    }
+
+    /**
+     * Obtiene estadísticas de la cola de mensajes para servidores sin jugadores, o null si está desactivada
+     */
+    public OutboundQueue.OutboundStats getOutboundStats() {
+        return outboundQueue != null ? outboundQueue.getStats() : null;
+    }
+
+    /**
+     * Obtiene estadísticas del despacho de mensajes recibidos
+     */
+    public MessageHandlerRegistry.HandlerStats getHandlerStats() {
+        return handlerRegistry.getStats();
+    }
+
+    /**
+     * Obtiene estadísticas de las peticiones con respuesta
+     */
+    public RequestTracker.RequestStats getRequestStats() {
+        return requestTracker.getStats();
+    }
+
     /**
      * Verifica si los canales están registrados correctamente
      */
@@ -334,22 +611,41 @@ public class PluginMessageManager {
         private final int registeredChannels;
         private final int connectedServers;
         private final int totalPlayers;
+        private final long broadcasts;
+        private final long deliveries;
+        private final long encodedBytes;
 
-        public ChannelStats(int registeredChannels, int connectedServers, int totalPlayers) {
+        public ChannelStats(int registeredChannels, int connectedServers, int totalPlayers,
+                            long broadcasts, long deliveries, long encodedBytes) {
             this.registeredChannels = registeredChannels;
             this.connectedServers = connectedServers;
             this.totalPlayers = totalPlayers;
+            this.broadcasts = broadcasts;
+            this.deliveries = deliveries;
+            this.encodedBytes = encodedBytes;
         }
 
         public int getRegisteredChannels() { return registeredChannels; }
         public int getConnectedServers() { return connectedServers; }
         public int getTotalPlayers() { return totalPlayers; }
+        public long getBroadcasts() { return broadcasts; }
+        public long getDeliveries() { return deliveries; }
+        public long getEncodedBytes() { return encodedBytes; }
+
+        /**
+         * Servidores que recibieron cada mensaje codificado, de media
+         */
+        public double getDeliveriesPerBroadcast() {
+            return broadcasts == 0 ? 0.0 : (double) deliveries / broadcasts;
+        }
 
         @Override
         public String toString() {
             return String.format(
-                    "ChannelStats{channels=%d, servers=%d, players=%d}",
-                    registeredChannels, connectedServers, totalPlayers
+                    "ChannelStats{channels=%d, servers=%d, players=%d, broadcasts=%d, deliveries=%d, " +
+                            "encodedBytes=%d, deliveriesPerBroadcast=%.1f}",
+                    registeredChannels, connectedServers, totalPlayers, broadcasts, deliveries,
+                    encodedBytes, getDeliveriesPerBroadcast()
             );
         }
     }
@@ -0,0 +1,43 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+/**
+ * Respuesta de un servidor a una petición enviada con {@link RequestTracker}
+ */
+public class PluginResponse {
+
+    private final String serverName;
+    private final String messageType;
+    private final long rttNanos;
+    private final byte[] data;
+
+    public PluginResponse(String serverName, String messageType, long rttNanos, byte[] data) {
+        this.serverName = serverName;
+        this.messageType = messageType;
+        this.rttNanos = rttNanos;
+        this.data = data;
+    }
+
+    public String getServerName() { return serverName; }
+    public String getMessageType() { return messageType; }
+    public long getRttNanos() { return rttNanos; }
+
+    public double getRttMillis() {
+        return rttNanos / 1_000_000.0;
+    }
+
+    /**
+     * Lee los campos de la respuesta (sin el tipo ni el identificador de correlación)
+     */
+    public DataInputStream read() {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PluginResponse{server=%s, type=%s, rttMs=%.2f, bytes=%d}",
+                serverName, messageType, getRttMillis(), data.length);
+    }
+}
@@ -0,0 +1,215 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peticiones enviadas a los servidores que esperan respuesta.
+ *
+ * Cada petición lleva un identificador de correlación (un long al final del
+ * mensaje) que el servidor devuelve al final de su respuesta. Un mismo envío a
+ * varios servidores comparte identificador y se espera una respuesta de cada uno.
+ * Las que no llegan a tiempo se completan con TimeoutException; los plazos se
+ * llevan en una {@link TimerWheel}, no con una tarea por petición.
+ */
+public class RequestTracker {
+
+    private static final long TICK_MILLIS = 50;
+    private static final int WHEEL_SIZE = 512;
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Request> pending = new ConcurrentHashMap<>();
+    private final TimerWheel<Request> timeouts;
+
+    // Métricas
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong totalRttNanos = new AtomicLong();
+
+    public RequestTracker(Logger logger) {
+        this.timeouts = new TimerWheel<>("messaging-timeouts", TICK_MILLIS, WHEEL_SIZE, this::expire, logger);
+    }
+
+    public void start() {
+        timeouts.start();
+    }
+
+    /**
+     * Abre una petición nueva; hay que llamar a {@link Request#expect} antes de enviar
+     * el mensaje a cada servidor y a {@link Request#sent} después de enviarlo a todos
+     */
+    public Request open(String messageType) {
+        Request request = new Request(nextId.incrementAndGet(), messageType);
+        pending.put(request.id, request);
+        return request;
+    }
+
+    /**
+     * Entrega la respuesta de un servidor; devuelve false si no corresponde a
+     * ninguna petición pendiente (ya vencida o de otro origen)
+     */
+    public boolean complete(long id, String serverName, String messageType, byte[] data) {
+        long receivedAt = System.nanoTime();
+        Request request = pending.get(id);
+        CompletableFuture<PluginResponse> response = request != null ? request.waiting.remove(serverName) : null;
+        if (response == null) {
+            unmatched.incrementAndGet();
+            return false;
+        }
+        request.removeIfDone();
+
+        long rtt = receivedAt - request.sentAt.getOrDefault(serverName, receivedAt);
+        completed.incrementAndGet();
+        totalRttNanos.addAndGet(rtt);
+        response.complete(new PluginResponse(serverName, messageType, rtt, data));
+        return true;
+    }
+
+    private void expire(Request request) {
+        if (!pending.remove(request.id, request)) {
+            return;
+        }
+        for (Map.Entry<String, CompletableFuture<PluginResponse>> entry : request.waiting.entrySet()) {
+            if (request.waiting.remove(entry.getKey(), entry.getValue())) {
+                timedOut.incrementAndGet();
+                entry.getValue().completeExceptionally(new TimeoutException(String.format(
+                        "%s sin respuesta de %s", request.messageType, entry.getKey())));
+            }
+        }
+    }
+
+    /**
+     * Detiene los plazos y cancela las peticiones pendientes
+     */
+    public void shutdown() {
+        timeouts.shutdown();
+        for (Request request : pending.values()) {
+            pending.remove(request.id);
+            request.waiting.values().forEach(response -> response.cancel(false));
+        }
+    }
+
+    /**
+     * Obtiene estadísticas de las peticiones
+     */
+    public RequestStats getStats() {
+        return new RequestStats(pending.size(), sent.get(), completed.get(), timedOut.get(),
+                unmatched.get(), totalRttNanos.get());
+    }
+
+    /**
+     * Una petición enviada a uno o varios servidores con el mismo identificador
+     */
+    public final class Request {
+        private final long id;
+        private final String messageType;
+        private final Map<String, CompletableFuture<PluginResponse>> waiting = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<PluginResponse>> responses = new LinkedHashMap<>();
+        // Momento del envío a cada servidor, para el tiempo de respuesta
+        private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        private volatile boolean sealed = false;
+
+        private Request(long id, String messageType) {
+            this.id = id;
+            this.messageType = messageType;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Registra la respuesta esperada de un servidor justo antes de enviarle el
+         * mensaje (la respuesta puede llegar antes de que termine el envío); el tiempo
+         * de respuesta se cuenta desde aquí
+         */
+        public CompletableFuture<PluginResponse> expect(String serverName) {
+            CompletableFuture<PluginResponse> response = new CompletableFuture<>();
+            sentAt.put(serverName, System.nanoTime());
+            waiting.put(serverName, response);
+            responses.put(serverName, response);
+            return response;
+        }
+
+        /**
+         * Retira la respuesta esperada de un servidor al que no se pudo enviar
+         */
+        public void cancel(String serverName) {
+            CompletableFuture<PluginResponse> response = waiting.remove(serverName);
+            responses.remove(serverName);
+            sentAt.remove(serverName);
+            if (response != null) {
+                response.cancel(false);
+            }
+        }
+
+        /**
+         * Marca la petición como enviada y empieza a contar su plazo.
+         * Devuelve la respuesta esperada de cada servidor.
+         */
+        public Map<String, CompletableFuture<PluginResponse>> sent(long timeoutMillis) {
+            sent.addAndGet(responses.size());
+            sealed = true;
+            removeIfDone();
+            if (pending.containsKey(id)) {
+                timeouts.schedule(this, timeoutMillis);
+            }
+            return Collections.unmodifiableMap(responses);
+        }
+
+        private void removeIfDone() {
+            if (sealed && waiting.isEmpty()) {
+                pending.remove(id, this);
+            }
+        }
+    }
+
+    /**
+     * Clase para estadísticas de las peticiones
+     */
+    public static class RequestStats {
+        private final int pending;
+        private final long sent;
+        private final long completed;
+        private final long timedOut;
+        private final long unmatched;
+        private final long totalRttNanos;
+
+        public RequestStats(int pending, long sent, long completed, long timedOut, long unmatched,
+                            long totalRttNanos) {
+            this.pending = pending;
+            this.sent = sent;
+            this.completed = completed;
+            this.timedOut = timedOut;
+            this.unmatched = unmatched;
+            this.totalRttNanos = totalRttNanos;
+        }
+
+        public int getPending() { return pending; }
+        public long getSent() { return sent; }
+        public long getCompleted() { return completed; }
+        public long getTimedOut() { return timedOut; }
+        public long getUnmatched() { return unmatched; }
+
+        public double getAverageRttMs() {
+            return completed == 0 ? 0.0 : totalRttNanos / 1_000_000.0 / completed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "RequestStats{pending=%d, sent=%d, completed=%d, timedOut=%d, unmatched=%d, avgRttMs=%.2f}",
+                    pending, sent, completed, timedOut, unmatched, getAverageRttMs()
+            );
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de cada servidor del network según sus respuestas a PING y STATUS_REQUEST.
+ *
+ * Cada respuesta o plazo vencido sustituye la foto del servidor por una nueva
+ * con los percentiles ya calculados, así que consultar el estado es una
+ * búsqueda en un mapa, sin bloqueos ni mensajes extra.
+ */
+public class ServerStatusRegistry {
+
+    // Tiempos de respuesta que se guardan por servidor para los percentiles
+    private static final int LATENCY_SAMPLES = 128;
+
+    private static final String STATUS_RESPONSE = "STATUS_RESPONSE";
+
+    private final Map<String, ServerStatus> statuses = new ConcurrentHashMap<>();
+    private final Map<String, LatencySamples> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Registra la respuesta de un servidor. Cualquier respuesta cuenta para el tiempo
+     * de respuesta; solo STATUS_RESPONSE trae base de datos, jugadores y versión.
+     */
+    public void recordResponse(PluginResponse response) {
+        String serverName = response.getServerName();
+        LatencySamples samples = latencies.computeIfAbsent(serverName, name -> new LatencySamples());
+        Boolean databaseConnected = null;
+        Integer playerCount = null;
+        String version = null;
+
+        if (STATUS_RESPONSE.equals(response.getMessageType())) {
+            try (DataInputStream input = response.read()) {
+                databaseConnected = input.readBoolean();
+                input.readLong();
+                playerCount = input.readInt();
+                version = input.readUTF();
+            } catch (IOException e) {
+                // Respuesta incompleta: se conserva lo anterior, pero cuenta como vista
+            }
+        }
+
+        synchronized (samples) {
+            ServerStatus previous = statuses.get(serverName);
+            if (previous != null) {
+                databaseConnected = databaseConnected != null ? databaseConnected : previous.databaseConnected;
+                playerCount = playerCount != null ? playerCount : previous.playerCount;
+                version = version != null ? version : previous.version;
+            }
+
+            samples.add(response.getRttNanos());
+            statuses.put(serverName, new ServerStatus(serverName, databaseConnected,
+                    playerCount != null ? playerCount : -1, version,
+                    System.currentTimeMillis(), 0, samples.count, response.getRttNanos(),
+                    samples.percentile(50), samples.percentile(95), samples.percentile(99)));
+        }
+    }
+
+    /**
+     * Registra que un servidor no respondió a tiempo
+     */
+    public void recordTimeout(String serverName) {
+        LatencySamples samples = latencies.computeIfAbsent(serverName, name -> new LatencySamples());
+        synchronized (samples) {
+            ServerStatus previous = statuses.get(serverName);
+            statuses.put(serverName, previous != null
+                    ? previous.withTimeout()
+                    : new ServerStatus(serverName, null, -1, null, 0, 1, 0, 0, 0, 0, 0));
+        }
+    }
+
+    /**
+     * Estado de un servidor, o null si nunca se le ha consultado
+     */
+    public ServerStatus get(String serverName) {
+        return statuses.get(serverName);
+    }
+
+    /**
+     * Estado de todos los servidores consultados
+     */
+    public Collection<ServerStatus> getAll() {
+        return Collections.unmodifiableCollection(statuses.values());
+    }
+
+    /**
+     * Últimos tiempos de respuesta de un servidor, en un buffer circular
+     */
+    private static final class LatencySamples {
+        private final long[] values = new long[LATENCY_SAMPLES];
+        private final long[] sorted = new long[LATENCY_SAMPLES];
+        private int next = 0;
+        private int size = 0;
+        private long count = 0;
+        private boolean dirty = false;
+
+        private void add(long rttNanos) {
+            values[next] = rttNanos;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+            count++;
+            dirty = true;
+        }
+
+        private long percentile(int percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            if (dirty) {
+                System.arraycopy(values, 0, sorted, 0, size);
+                Arrays.sort(sorted, 0, size);
+                dirty = false;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    /**
+     * Foto inmutable del estado de un servidor
+     */
+    public static class ServerStatus {
+        private final String serverName;
+        private final Boolean databaseConnected;
+        private final int playerCount;
+        private final String version;
+        private final long lastSeen;
+        private final int consecutiveTimeouts;
+        private final long responses;
+        private final long lastRttNanos;
+        private final long p50RttNanos;
+        private final long p95RttNanos;
+        private final long p99RttNanos;
+
+        public ServerStatus(String serverName, Boolean databaseConnected, int playerCount, String version,
+                            long lastSeen, int consecutiveTimeouts, long responses, long lastRttNanos,
+                            long p50RttNanos, long p95RttNanos, long p99RttNanos) {
+            this.serverName = serverName;
+            this.databaseConnected = databaseConnected;
+            this.playerCount = playerCount;
+            this.version = version;
+            this.lastSeen = lastSeen;
+            this.consecutiveTimeouts = consecutiveTimeouts;
+            this.responses = responses;
+            this.lastRttNanos = lastRttNanos;
+            this.p50RttNanos = p50RttNanos;
+            this.p95RttNanos = p95RttNanos;
+            this.p99RttNanos = p99RttNanos;
+        }
+
+        private ServerStatus withTimeout() {
+            return new ServerStatus(serverName, databaseConnected, playerCount, version, lastSeen,
+                    consecutiveTimeouts + 1, responses, lastRttNanos, p50RttNanos, p95RttNanos, p99RttNanos);
+        }
+
+        public String getServerName() { return serverName; }
+        /** Conexión a la base de datos del servidor, o null si aún no envió su estado */
+        public Boolean getDatabaseConnected() { return databaseConnected; }
+        /** Jugadores según el servidor, o -1 si aún no envió su estado */
+        public int getPlayerCount() { return playerCount; }
+        public String getVersion() { return version; }
+        /** Última respuesta recibida (epoch ms), o 0 si nunca respondió */
+        public long getLastSeen() { return lastSeen; }
+        public int getConsecutiveTimeouts() { return consecutiveTimeouts; }
+        public long getResponses() { return responses; }
+        public double getLastRttMs() { return lastRttNanos / 1_000_000.0; }
+        public double getP50RttMs() { return p50RttNanos / 1_000_000.0; }
+        public double getP95RttMs() { return p95RttNanos / 1_000_000.0; }
+        public double getP99RttMs() { return p99RttNanos / 1_000_000.0; }
+
+        /**
+         * Verifica si el servidor respondió a la última consulta
+         */
+        public boolean isResponding() {
+            return lastSeen > 0 && consecutiveTimeouts == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "ServerStatus{server=%s, responding=%s, database=%s, players=%d, lastSeen=%d, " +
+                            "timeouts=%d, p50Ms=%.2f, p95Ms=%.2f, p99Ms=%.2f}",
+                    serverName, isResponding(), databaseConnected, playerCount, lastSeen,
+                    consecutiveTimeouts, getP50RttMs(), getP95RttMs(), getP99RttMs()
+            );
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import gc.grivyzom.grivyzomCore.utils.MessageUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Rueda de temporizadores para plazos cortos y numerosos.
+ *
+ * En lugar de programar una tarea por plazo, cada plazo se guarda en la casilla
+ * de su tic de vencimiento y un único hilo avanza un tic cada tickMillis revisando
+ * solo la casilla actual, así que añadir un plazo es O(1) sin importar cuántos haya.
+ * Los plazos no se cancelan: quien los recibe al vencer comprueba si siguen vigentes.
+ * Un plazo puede vencer hasta un tic más tarde de lo pedido.
+ */
+public class TimerWheel<T> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<Queue<Timeout<T>>> buckets;
+    private final Consumer<T> onExpire;
+    private final Logger logger;
+    private final ScheduledExecutorService ticker;
+
+    private volatile long currentTick = 0;
+
+    // Métricas
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * @param wheelSize número de casillas; se redondea a la siguiente potencia de 2
+     */
+    public TimerWheel(String name, long tickMillis, int wheelSize, Consumer<T> onExpire, Logger logger) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ConcurrentLinkedQueue<>());
+        }
+        this.onExpire = onExpire;
+        this.logger = logger;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GrivyzomCore-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Empieza a avanzar la rueda
+     */
+    public void start() {
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Entrega item a onExpire pasados delayMillis
+     */
+    public void schedule(T item, long delayMillis) {
+        // Un tic de margen por si la rueda avanza mientras se añade
+        long ticks = (Math.max(0, delayMillis) + tickMillis - 1) / tickMillis + 1;
+        long deadlineTick = currentTick + ticks;
+        scheduled.incrementAndGet();
+
+        while (true) {
+            Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+            buckets.get((int) (deadlineTick & mask)).add(timeout);
+            // Si la rueda ya pasó por ese tic, puede que no lo haya visto: se pasa al siguiente
+            // en lugar de esperar una vuelta entera. claim() evita que venza dos veces.
+            long tick = currentTick;
+            if (tick < deadlineTick || !timeout.claim()) {
+                return;
+            }
+            deadlineTick = tick + 1;
+        }
+    }
+
+    private void tick() {
+        long tick = ++currentTick;
+        Iterator<Timeout<T>> iterator = buckets.get((int) (tick & mask)).iterator();
+
+        while (iterator.hasNext()) {
+            Timeout<T> timeout = iterator.next();
+            // Los de vueltas posteriores se quedan en la casilla
+            if (timeout.deadlineTick > tick) {
+                continue;
+            }
+            iterator.remove();
+            if (!timeout.claim()) {
+                // Ya reprogramado por schedule() en un tic posterior
+                continue;
+            }
+            expired.incrementAndGet();
+            try {
+                onExpire.accept(timeout.item);
+            } catch (RuntimeException e) {
+                MessageUtils.sendErrorMessage(logger, "Error al procesar un plazo vencido: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Detiene la rueda; los plazos pendientes no llegan a vencer
+     */
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Plazos programados que aún no han vencido
+     */
+    public long getPending() {
+        return scheduled.get() - expired.get();
+    }
+
+    private static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Solo el primero en reclamarlo (la rueda al vencer o schedule al reprogramar) lo procesa
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package gc.grivyzom.grivyzomCore.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversión de monedas entre unidades mínimas (long) y su valor decimal.
+ *
+ * Las monedas se manejan siempre como un long de centésimas para que la
+ * aritmética sea exacta; solo se convierten a decimal al leer o escribir
+ * la columna coins y al mostrarlas.
+ */
+public final class Coins {
+
+    // Decimales de la moneda (1 moneda = 100 unidades mínimas)
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_COIN = 100L;
+
+    private Coins() {
+    }
+
+    /**
+     * Convierte un valor decimal de la base de datos a unidades mínimas
+     */
+    public static long fromDecimal(BigDecimal value) {
+        if (value == null) {
+            return 0L;
+        }
+        return value.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convierte unidades mínimas al valor decimal de la columna coins
+     */
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Convierte un importe double (API antigua) a unidades mínimas, redondeando
+     */
+    public static long fromDouble(double value) {
+        return Math.round(value * MINOR_PER_COIN);
+    }
+
+    /**
+     * Convierte unidades mínimas a double (solo para mostrar o compatibilidad)
+     */
+    public static double toDouble(long minorUnits) {
+        return minorUnits / (double) MINOR_PER_COIN;
+    }
+
+    /**
+     * Formatea unidades mínimas como texto, p.ej. 12345 -> "123.45"
+     */
+    public static String format(long minorUnits) {
+        return toDecimal(minorUnits).toPlainString();
+    }
+}
@@ -4,9 +4,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Modelo que representa un jugador en el sistema GrivyzomCore
+ * Modelo que representa un jugador en el sistema GrivyzomCore.
+ *
+ * Los saldos (monedas y gemas) y el tiempo de juego se modifican sin bloqueos
+ * mediante CAS, por lo que pueden actualizarse desde varios hilos a la vez.
+ * Las monedas se guardan en unidades mínimas (ver {@link Coins}).
+ *
+ * Solo el cambio del valor es sin bloqueos: después se avisa al listener en el
+ * mismo hilo. Para un jugador online, PlayerDataManager anota ahí el saldo en el
+ * diario (esperando a que llegue al disco, ver PlayerJournal) y actualiza los
+ * rankings, así que con muchos cambios a la vez los hilos esperan al diario. Es
+ * deliberado: un cambio confirmado a quien lo hizo sobrevive a una caída del proxy.
+ * El diario guarda el saldo completo tras cada cambio, no el incremento.
  */
 public class GrivyzomPlayer {
 
@@ -16,39 +30,73 @@ public class GrivyzomPlayer {
     private final Timestamp firstJoin;
     private Timestamp lastJoin;
     private String lastServer;
-    private long totalPlaytime;
-    private double coins;
-    private int gems;
+    private final AtomicLong totalPlaytime;
+    // Monedas en unidades mínimas (centésimas)
+    private final AtomicLong coins;
+    private final AtomicInteger gems;
     private String rankId;
     private String permissions;
     private String data;
     private boolean isOnline;
 
-    // Constructor completo
+    // Campos modificados desde el último guardado (máscara de PlayerField)
+    private final AtomicInteger dirtyFields = new AtomicInteger();
+    // Mutaciones acumuladas desde el último guardado
+    private final AtomicInteger pendingMutations = new AtomicInteger();
+    // Serializa los guardados del jugador para que un valor antiguo no pise a uno más nuevo
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    // Notificado en cada cambio de saldo, tiempo de juego o nombre (p.ej. rankings)
+    private volatile PlayerChangeListener changeListener;
+
+    /**
+     * Constructor completo con las monedas en unidades enteras
+     * @deprecated usar {@link #ofMinor}, que recibe las monedas en unidades mínimas
+     */
+    @Deprecated
     public GrivyzomPlayer(UUID uuid, String username, String displayName,
                           Timestamp firstJoin, Timestamp lastJoin, String lastServer,
                           long totalPlaytime, double coins, int gems, String rankId,
                           String permissions, String data, boolean isOnline) {
+        this(uuid, username, displayName, firstJoin, lastJoin, lastServer, totalPlaytime,
+                Coins.fromDouble(coins), gems, rankId, permissions, data, isOnline);
+    }
+
+    private GrivyzomPlayer(UUID uuid, String username, String displayName,
+                           Timestamp firstJoin, Timestamp lastJoin, String lastServer,
+                           long totalPlaytime, long coinsMinor, int gems, String rankId,
+                           String permissions, String data, boolean isOnline) {
         this.uuid = uuid;
         this.username = username;
         this.displayName = displayName;
         this.firstJoin = firstJoin;
         this.lastJoin = lastJoin;
         this.lastServer = lastServer;
-        this.totalPlaytime = totalPlaytime;
-        this.coins = coins;
-        this.gems = gems;
+        this.totalPlaytime = new AtomicLong(totalPlaytime);
+        this.coins = new AtomicLong(coinsMinor);
+        this.gems = new AtomicInteger(gems);
         this.rankId = rankId;
         this.permissions = permissions;
         this.data = data;
         this.isOnline = isOnline;
     }
 
+    /**
+     * Crea un jugador con las monedas en unidades mínimas (ver {@link Coins})
+     */
+    public static GrivyzomPlayer ofMinor(UUID uuid, String username, String displayName,
+                                         Timestamp firstJoin, Timestamp lastJoin, String lastServer,
+                                         long totalPlaytime, long coinsMinor, int gems, String rankId,
+                                         String permissions, String data, boolean isOnline) {
+        return new GrivyzomPlayer(uuid, username, displayName, firstJoin, lastJoin, lastServer, totalPlaytime,
+                coinsMinor, gems, rankId, permissions, data, isOnline);
+    }
+
     /**
      * Crea un GrivyzomPlayer desde un ResultSet de la base de datos
      */
     public static GrivyzomPlayer fromResultSet(ResultSet rs) throws SQLException {
-        return new GrivyzomPlayer(
+        return ofMinor(
                 UUID.fromString(rs.getString("uuid")),
                 rs.getString("username"),
                 rs.getString("display_name"),
@@ -56,7 +104,7 @@ public class GrivyzomPlayer {
                 rs.getTimestamp("last_join"),
                 rs.getString("last_server"),
                 rs.getLong("total_playtime"),
-                rs.getDouble("coins"),
+                Coins.fromDecimal(rs.getBigDecimal("coins")),
                 rs.getInt("gems"),
                 rs.getString("rank_id"),
                 rs.getString("permissions"),
@@ -66,36 +114,99 @@ public class GrivyzomPlayer {
     }
 
     /**
-     * Añade monedas al jugador
+     * Añade monedas (en unidades mínimas) y devuelve el nuevo saldo
      */
-    public void addCoins(double amount) {
-        this.coins += amount;
+    public long addCoinsMinor(long amount) {
+        long updated = coins.addAndGet(amount);
+        onBalanceChanged(PlayerField.COINS);
+        return updated;
     }
 
     /**
-     * Remueve monedas del jugador
+     * Remueve monedas (en unidades mínimas) solo si hay saldo suficiente
+     * (comprobación y cobro atómicos). Devuelve false sin modificar nada si no alcanza.
      */
-    public boolean removeCoins(double amount) {
-        if (this.coins >= amount) {
-            this.coins -= amount;
+    public boolean removeCoinsMinor(long amount) {
+        while (true) {
+            long current = coins.get();
+            if (current < amount) {
+                return false;
+            }
+            if (coins.compareAndSet(current, current - amount)) {
+                onBalanceChanged(PlayerField.COINS);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Cambia el saldo de monedas (en unidades mínimas) solo si sigue siendo el esperado
+     */
+    public boolean compareAndSetCoinsMinor(long expected, long updated) {
+        if (coins.compareAndSet(expected, updated)) {
+            onBalanceChanged(PlayerField.COINS);
             return true;
         }
         return false;
     }
 
+    /**
+     * Añade monedas al jugador
+     * @deprecated usar {@link #addCoinsMinor(long)}, que además devuelve el nuevo saldo
+     */
+    @Deprecated
+    public void addCoins(double amount) {
+        addCoinsMinor(Coins.fromDouble(amount));
+    }
+
+    /**
+     * Remueve monedas del jugador si tiene saldo suficiente
+     * @deprecated usar {@link #removeCoinsMinor(long)}
+     */
+    @Deprecated
+    public boolean removeCoins(double amount) {
+        return removeCoinsMinor(Coins.fromDouble(amount));
+    }
+
     /**
      * Añade gemas al jugador
      */
     public void addGems(int amount) {
-        this.gems += amount;
+        addGemsAndGet(amount);
     }
 
     /**
-     * Remueve gemas del jugador
+     * Añade gemas y devuelve el nuevo saldo
+     */
+    public int addGemsAndGet(int amount) {
+        int updated = gems.addAndGet(amount);
+        onBalanceChanged(PlayerField.GEMS);
+        return updated;
+    }
+
+    /**
+     * Remueve gemas del jugador solo si tiene saldo suficiente (comprobación y
+     * cobro atómicos). Devuelve false sin modificar nada si no alcanza.
      */
     public boolean removeGems(int amount) {
-        if (this.gems >= amount) {
-            this.gems -= amount;
+        while (true) {
+            int current = gems.get();
+            if (current < amount) {
+                return false;
+            }
+            if (gems.compareAndSet(current, current - amount)) {
+                onBalanceChanged(PlayerField.GEMS);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Cambia el saldo de gemas solo si sigue siendo el esperado
+     */
+    public boolean compareAndSetGems(int expected, int updated) {
+        if (gems.compareAndSet(expected, updated)) {
+            onBalanceChanged(PlayerField.GEMS);
             return true;
         }
         return false;
@@ -105,14 +216,36 @@ public class GrivyzomPlayer {
      * Añade tiempo de juego
      */
     public void addPlaytime(long milliseconds) {
-        this.totalPlaytime += milliseconds;
+        totalPlaytime.addAndGet(milliseconds);
+        markDirty(PlayerField.TOTAL_PLAYTIME);
+        notifyChange(PlayerField.TOTAL_PLAYTIME);
+    }
+
+    /**
+     * Registra un cambio de saldo: lo marca pendiente de guardar y avisa al listener
+     * (que lo anota en el diario de PlayerDataManager, ver PlayerJournal)
+     */
+    private void onBalanceChanged(PlayerField field) {
+        markDirty(field);
+        notifyChange(field);
+    }
+
+    private void notifyChange(PlayerField field) {
+        PlayerChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.onFieldChanged(this, field);
+        }
+    }
+
+    public void setChangeListener(PlayerChangeListener changeListener) {
+        this.changeListener = changeListener;
     }
 
     /**
      * Obtiene el tiempo de juego en formato legible
      */
     public String getFormattedPlaytime() {
-        long totalSeconds = totalPlaytime / 1000;
+        long totalSeconds = totalPlaytime.get() / 1000;
         long hours = totalSeconds / 3600;
         long minutes = (totalSeconds % 3600) / 60;
         long seconds = totalSeconds % 60;
@@ -168,15 +301,93 @@ public class GrivyzomPlayer {
     /**
      * Verifica si el jugador tiene suficientes monedas
      */
+    public boolean hasEnoughCoinsMinor(long amount) {
+        return coins.get() >= amount;
+    }
+
+    /**
+     * Verifica si el jugador tiene suficientes monedas
+     * @deprecated usar {@link #hasEnoughCoinsMinor(long)}
+     */
+    @Deprecated
     public boolean hasEnoughCoins(double amount) {
-        return this.coins >= amount;
+        return hasEnoughCoinsMinor(Coins.fromDouble(amount));
     }
 
     /**
      * Verifica si el jugador tiene suficientes gemas
      */
     public boolean hasEnoughGems(int amount) {
-        return this.gems >= amount;
+        return gems.get() >= amount;
+    }
+
+    /**
+     * Marca un campo como pendiente de guardar
+     */
+    public void markDirty(PlayerField field) {
+        dirtyFields.getAndUpdate(mask -> mask | field.getMask());
+        pendingMutations.incrementAndGet();
+    }
+
+    /**
+     * Verifica si el jugador tiene cambios sin guardar
+     */
+    public boolean isDirty() {
+        return dirtyFields.get() != 0;
+    }
+
+    /**
+     * Obtiene la máscara de campos pendientes sin limpiarla
+     */
+    public int getDirtyFields() {
+        return dirtyFields.get();
+    }
+
+    /**
+     * Obtiene y limpia la máscara de campos pendientes.
+     * Los valores deben leerse después de esta llamada para no perder cambios concurrentes.
+     */
+    public int consumeDirtyFields() {
+        return dirtyFields.getAndSet(0);
+    }
+
+    /**
+     * Vuelve a marcar campos como pendientes (tras un guardado fallido)
+     */
+    public void restoreDirtyFields(int mask) {
+        dirtyFields.getAndUpdate(current -> current | mask);
+    }
+
+    /**
+     * Obtiene y reinicia el número de mutaciones desde el último guardado
+     */
+    public int consumePendingMutations() {
+        return pendingMutations.getAndSet(0);
+    }
+
+    /**
+     * Vuelve a sumar las mutaciones de un guardado fallido
+     */
+    public void restorePendingMutations(int mutations) {
+        pendingMutations.addAndGet(mutations);
+    }
+
+    public ReentrantLock getSaveLock() {
+        return saveLock;
+    }
+
+    /**
+     * Obtiene el valor actual de un campo persistente
+     */
+    public Object getFieldValue(PlayerField field) {
+        return switch (field) {
+            case COINS -> Coins.toDecimal(coins.get());
+            case GEMS -> gems.get();
+            case RANK_ID -> rankId;
+            case PERMISSIONS -> permissions;
+            case DATA -> data;
+            case TOTAL_PLAYTIME -> totalPlaytime.get();
+        };
     }
 
     /**
@@ -196,7 +407,12 @@ public class GrivyzomPlayer {
     }
 
     public void setUsername(String username) {
+        String previous = this.username;
         this.username = username;
+        PlayerChangeListener listener = changeListener;
+        if (listener != null && previous != null && !previous.equals(username)) {
+            listener.onUsernameChanged(this, previous);
+        }
     }
 
     public String getDisplayName() {
@@ -228,27 +444,47 @@ public class GrivyzomPlayer {
     }
 
     public long getTotalPlaytime() {
-        return totalPlaytime;
+        return totalPlaytime.get();
     }
 
     public void setTotalPlaytime(long totalPlaytime) {
-        this.totalPlaytime = totalPlaytime;
+        this.totalPlaytime.set(totalPlaytime);
+        markDirty(PlayerField.TOTAL_PLAYTIME);
+        notifyChange(PlayerField.TOTAL_PLAYTIME);
+    }
+
+    public long getCoinsMinor() {
+        return coins.get();
     }
 
+    public void setCoinsMinor(long coins) {
+        this.coins.set(coins);
+        onBalanceChanged(PlayerField.COINS);
+    }
+
+    /**
+     * @deprecated usar {@link #getCoinsMinor()}
+     */
+    @Deprecated
     public double getCoins() {
-        return coins;
+        return Coins.toDouble(coins.get());
     }
 
+    /**
+     * @deprecated usar {@link #setCoinsMinor(long)}
+     */
+    @Deprecated
     public void setCoins(double coins) {
-        this.coins = coins;
+        setCoinsMinor(Coins.fromDouble(coins));
     }
 
     public int getGems() {
-        return gems;
+        return gems.get();
     }
 
     public void setGems(int gems) {
-        this.gems = gems;
+        this.gems.set(gems);
+        onBalanceChanged(PlayerField.GEMS);
     }
 
     public String getRankId() {
@@ -257,6 +493,7 @@ public class GrivyzomPlayer {
 
     public void setRankId(String rankId) {
         this.rankId = rankId;
+        markDirty(PlayerField.RANK_ID);
     }
 
     public String getPermissions() {
@@ -265,6 +502,7 @@ public class GrivyzomPlayer {
 
     public void setPermissions(String permissions) {
         this.permissions = permissions;
+        markDirty(PlayerField.PERMISSIONS);
     }
 
     public String getData() {
@@ -273,6 +511,7 @@ public class GrivyzomPlayer {
 
     public void setData(String data) {
         this.data = data;
+        markDirty(PlayerField.DATA);
     }
 
     public boolean isOnline() {
@@ -287,8 +526,8 @@ public class GrivyzomPlayer {
     public String toString() {
         return String.format(
                 "GrivyzomPlayer{uuid=%s, username='%s', displayName='%s', " +
-                        "coins=%.2f, gems=%d, rankId='%s', isOnline=%s, lastServer='%s'}",
-                uuid, username, displayName, coins, gems, rankId, isOnline, lastServer
+                        "coins=%s, gems=%d, rankId='%s', isOnline=%s, lastServer='%s'}",
+                uuid, username, displayName, Coins.format(coins.get()), gems.get(), rankId, isOnline, lastServer
         );
     }
 
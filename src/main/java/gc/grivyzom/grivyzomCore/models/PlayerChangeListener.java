@@ -0,0 +1,21 @@
+package gc.grivyzom.grivyzomCore.models;
+
+/**
+ * Recibe los cambios de saldo, tiempo de juego y nombre de un GrivyzomPlayer.
+ * Se invoca en el hilo que hizo el cambio, por lo que debe ser rápido; lo que
+ * espere aquí lo espera también quien modificó el saldo.
+ */
+@FunctionalInterface
+public interface PlayerChangeListener {
+
+    /**
+     * Llamado después de que cambie el valor del campo indicado
+     */
+    void onFieldChanged(GrivyzomPlayer player, PlayerField field);
+
+    /**
+     * Llamado después de cambiar el nombre de usuario (p.ej. para actualizar índices por nombre)
+     */
+    default void onUsernameChanged(GrivyzomPlayer player, String previousUsername) {
+    }
+}
@@ -0,0 +1,44 @@
+package gc.grivyzom.grivyzomCore.models;
+
+/**
+ * Campos persistentes de GrivyzomPlayer que pueden quedar pendientes de guardar.
+ * Cada campo ocupa un bit en la máscara de cambios del jugador.
+ */
+public enum PlayerField {
+
+    COINS("coins"),
+    GEMS("gems"),
+    RANK_ID("rank_id"),
+    PERMISSIONS("permissions"),
+    DATA("data"),
+    TOTAL_PLAYTIME("total_playtime");
+
+    private final String column;
+    private final int mask;
+
+    PlayerField(String column) {
+        this.column = column;
+        this.mask = 1 << ordinal();
+    }
+
+    /**
+     * Nombre de la columna en grivyzom_players
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Bit del campo dentro de la máscara de cambios
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Verifica si el campo está incluido en una máscara de cambios
+     */
+    public boolean isIn(int dirtyMask) {
+        return (dirtyMask & mask) != 0;
+    }
+}
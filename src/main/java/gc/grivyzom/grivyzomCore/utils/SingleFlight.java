@@ -0,0 +1,71 @@
+package gc.grivyzom.grivyzomCore.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa peticiones concurrentes por clave: mientras una carga está en curso,
+ * las peticiones con la misma clave reciben el mismo future en lugar de lanzar
+ * otra. La entrada se retira al terminar, por lo que no guarda resultados.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // Estadísticas
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    /**
+     * Ejecuta la carga de la clave o se une a la que ya está en curso
+     */
+    public CompletableFuture<V> execute(K key, Supplier<V> loader, Executor executor) {
+        requests.incrementAndGet();
+
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            return existing;
+        }
+
+        // La carga se lanza fuera del mapa, no dentro de computeIfAbsent; si el ejecutor
+        // la rechaza, el future termina con el error en vez de lanzarlo al llamador
+        CompletableFuture<V> created = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            return existing;
+        }
+
+        created.whenComplete((value, error) -> inFlight.remove(key, created));
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(loader.get());
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+}
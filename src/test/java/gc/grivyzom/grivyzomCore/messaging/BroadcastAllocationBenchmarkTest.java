@@ -0,0 +1,101 @@
+package gc.grivyzom.grivyzomCore.messaging;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Memoria reservada por cada envío a todos los servidores con un network de 64
+ * backends: el mensaje se codifica una vez y todos reciben el mismo array, así
+ * que lo reservado no crece con el número de servidores.
+ */
+class BroadcastAllocationBenchmarkTest {
+
+    private static final int SERVERS = 64;
+    private static final int PAYLOAD_CHARS = 4096;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.from("grivyzom:core");
+
+    @Test
+    void broadcastAllocatesOnePayloadForAllServers() {
+        byte[][] received = new byte[SERVERS][];
+        List<RegisteredServer> servers = new ArrayList<>();
+        for (int i = 0; i < SERVERS; i++) {
+            servers.add(newServer(i, received));
+        }
+        PluginMessageManager manager = new PluginMessageManager(newProxy(servers), NOPLogger.NOP_LOGGER, null);
+
+        String data = "x".repeat(PAYLOAD_CHARS);
+        PluginMessageManager.PayloadWriter writer = output -> {
+            output.writeUTF("BENCHMARK");
+            output.writeUTF(data);
+        };
+
+        for (int i = 0; i < WARMUP; i++) {
+            manager.broadcast(CHANNEL, "BENCHMARK", writer);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        int delivered = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            delivered += manager.broadcast(CHANNEL, "BENCHMARK", writer);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long bytesPerBroadcast = (threads.getThreadAllocatedBytes(threadId) - startBytes) / ITERATIONS;
+
+        int payloadLength = received[0].length;
+        System.out.printf("Broadcast a %d servidores: payload=%d B, reservado=%d B/envío, %.2f µs/envío%n",
+                SERVERS, payloadLength, bytesPerBroadcast, elapsedNanos / 1_000.0 / ITERATIONS);
+
+        assertEquals(SERVERS * ITERATIONS, delivered);
+        for (byte[] payload : received) {
+            assertSame(received[0], payload);
+        }
+        // Con una copia por servidor serían más de SERVERS * payloadLength bytes por envío
+        assertTrue(bytesPerBroadcast < (long) SERVERS * payloadLength / 4,
+                "reservado por envío: " + bytesPerBroadcast + " B");
+    }
+
+    private static RegisteredServer newServer(int index, byte[][] received) {
+        ServerInfo info = new ServerInfo("server-" + index,
+                InetSocketAddress.createUnresolved("localhost", 25565 + index));
+        return (RegisteredServer) Proxy.newProxyInstance(RegisteredServer.class.getClassLoader(),
+                new Class<?>[]{RegisteredServer.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getServerInfo" -> info;
+                    case "sendPluginMessage" -> {
+                        received[index] = (byte[]) args[1];
+                        yield Boolean.TRUE;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static ProxyServer newProxy(List<RegisteredServer> servers) {
+        return (ProxyServer) Proxy.newProxyInstance(ProxyServer.class.getClassLoader(),
+                new Class<?>[]{ProxyServer.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getAllServers")) {
+                        return servers;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
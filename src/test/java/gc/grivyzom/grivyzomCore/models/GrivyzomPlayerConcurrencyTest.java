@@ -0,0 +1,143 @@
+package gc.grivyzom.grivyzomCore.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Muchos hilos modificando el saldo del mismo jugador a la vez: no se debe
+ * perder ninguna actualización ni quedar un saldo negativo.
+ */
+class GrivyzomPlayerConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 100_000;
+
+    @Test
+    void concurrentCoinUpdatesAreNotLost() throws Exception {
+        GrivyzomPlayer player = newPlayer(0L, 0);
+
+        long[] results = runConcurrently(thread -> {
+            long removed = 0;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                player.addCoinsMinor(3);
+                if (player.removeCoinsMinor(2)) {
+                    removed++;
+                }
+            }
+            return removed;
+        });
+
+        long removed = 0;
+        for (long result : results) {
+            removed += result;
+        }
+        long added = 3L * THREADS * OPERATIONS_PER_THREAD;
+        assertEquals(added - 2 * removed, player.getCoinsMinor());
+        assertTrue(player.getCoinsMinor() >= 0);
+        assertTrue(player.isDirty());
+    }
+
+    @Test
+    void concurrentGemUpdatesAreNotLost() throws Exception {
+        GrivyzomPlayer player = newPlayer(0L, 0);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                player.addGems(1);
+            }
+            return 0;
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, player.getGems());
+    }
+
+    @Test
+    void removalsNeverOverdraw() throws Exception {
+        int initialGems = THREADS * 1_000;
+        GrivyzomPlayer player = newPlayer(0L, initialGems);
+
+        long[] results = runConcurrently(thread -> {
+            long removed = 0;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                if (player.removeGems(1)) {
+                    removed++;
+                }
+            }
+            return removed;
+        });
+
+        long removed = 0;
+        for (long result : results) {
+            removed += result;
+        }
+        assertEquals(initialGems, removed);
+        assertEquals(0, player.getGems());
+    }
+
+    @Test
+    void compareAndSetRetriesAreNotLost() throws Exception {
+        GrivyzomPlayer player = newPlayer(0L, 0);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long current;
+                do {
+                    current = player.getCoinsMinor();
+                } while (!player.compareAndSetCoinsMinor(current, current + 1));
+            }
+            return 0;
+        });
+
+        assertEquals((long) THREADS * OPERATIONS_PER_THREAD, player.getCoinsMinor());
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        long run(int thread);
+    }
+
+    /**
+     * Ejecuta worker en THREADS hilos que arrancan a la vez y devuelve el resultado de cada uno
+     */
+    private static long[] runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return worker.run(thread);
+                }));
+            }
+            start.countDown();
+
+            long[] results = new long[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                results[i] = futures.get(i).get(60, TimeUnit.SECONDS);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static GrivyzomPlayer newPlayer(long coinsMinor, int gems) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return GrivyzomPlayer.ofMinor(UUID.randomUUID(), "tester", "tester", now, now, null,
+                0L, coinsMinor, gems, null, null, null, true);
+    }
+}